@@ -0,0 +1,5 @@
+-- Persist the celebrity set of the hybrid home feed; CelebrityRegistry flags authors at or above
+-- app.feed.celebrityFollowerThreshold on its next refresh
+ALTER TABLE users ADD COLUMN IF NOT EXISTS is_celebrity BOOLEAN DEFAULT FALSE;
+UPDATE users SET is_celebrity = FALSE WHERE is_celebrity IS NULL;
+ALTER TABLE users ALTER COLUMN is_celebrity SET NOT NULL;
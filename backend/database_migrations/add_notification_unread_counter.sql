@@ -0,0 +1,6 @@
+-- Add the denormalized unread notification counter to users and backfill it from notifications
+CREATE INDEX IF NOT EXISTS idx_notifications_unread ON notifications (user_id) WHERE is_read = false;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS unread_notification_count BIGINT DEFAULT 0;
+UPDATE users u SET unread_notification_count = (SELECT COUNT(*) FROM notifications n WHERE n.user_id = u.id AND n.is_read = false);
+ALTER TABLE users ALTER COLUMN unread_notification_count SET NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_notifications_user_created ON notifications (user_id, created_at DESC, id DESC);
@@ -0,0 +1,7 @@
+-- Add denormalized like/comment counters to posts and backfill them from the existing rows
+ALTER TABLE posts ADD COLUMN IF NOT EXISTS like_count BIGINT DEFAULT 0;
+ALTER TABLE posts ADD COLUMN IF NOT EXISTS comment_count BIGINT DEFAULT 0;
+UPDATE posts p SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.post_id = p.id);
+UPDATE posts p SET comment_count = (SELECT COUNT(*) FROM comments c WHERE c.post_id = p.id);
+ALTER TABLE posts ALTER COLUMN like_count SET NOT NULL;
+ALTER TABLE posts ALTER COLUMN comment_count SET NOT NULL;
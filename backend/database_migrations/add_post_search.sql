@@ -0,0 +1,8 @@
+-- Full-text search over posts (GET /api/posts/search). The vector is a generated column, so
+-- PostgreSQL keeps it current on every insert and update; titles weigh more than descriptions.
+ALTER TABLE posts ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('english', coalesce(description, '')), 'B')
+    ) STORED;
+CREATE INDEX IF NOT EXISTS idx_posts_search ON posts USING GIN (search_vector);
@@ -0,0 +1,7 @@
+-- Add denormalized follower/following counters to users and backfill them from subscriptions
+ALTER TABLE users ADD COLUMN IF NOT EXISTS follower_count BIGINT DEFAULT 0;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS following_count BIGINT DEFAULT 0;
+UPDATE users u SET follower_count = (SELECT COUNT(*) FROM subscriptions s WHERE s.subscribed_to_id = u.id);
+UPDATE users u SET following_count = (SELECT COUNT(*) FROM subscriptions s WHERE s.subscriber_id = u.id);
+ALTER TABLE users ALTER COLUMN follower_count SET NOT NULL;
+ALTER TABLE users ALTER COLUMN following_count SET NOT NULL;
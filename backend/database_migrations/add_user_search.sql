@@ -0,0 +1,5 @@
+-- Indexes for GET /api/user/search. Prefix matches walk a C-collation btree in username order;
+-- fuzzy matches are ranked by trigram distance straight from a GiST index (pg_trgm).
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_users_username_prefix ON users ((lower(username) COLLATE "C"));
+CREATE INDEX IF NOT EXISTS idx_users_username_trgm ON users USING GIST (lower(username) gist_trgm_ops);
@@ -0,0 +1,8 @@
+-- Backfill the materialized home timelines from existing subscriptions and visible posts.
+-- Run once after the application has created the timeline_entries table.
+INSERT INTO timeline_entries (owner_id, post_id, author_id, created_at)
+SELECT s.subscriber_id, p.id, p.user_id, p.created_at
+FROM subscriptions s
+JOIN posts p ON p.user_id = s.subscribed_to_id
+WHERE p.is_hidden = false
+ON CONFLICT (owner_id, post_id) DO NOTHING;
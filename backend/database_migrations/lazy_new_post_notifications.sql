@@ -0,0 +1,3 @@
+-- Prepare for app.notifications.newPostMode=lazy: start every user's watermark now so that
+-- existing subscriptions (which have no created_at) do not surface old posts as unread.
+UPDATE users SET notifications_seen_at = NOW() WHERE notifications_seen_at IS NULL;
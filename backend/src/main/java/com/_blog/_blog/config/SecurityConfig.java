@@ -2,6 +2,7 @@ package com._blog._blog.config;
 import com._blog._blog.security.JwtAuthenticationFilter;
 import com._blog._blog.security.JwtAuthenticationEntryPoint;
 import com._blog._blog.security.CustomAccessDeniedHandler;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -94,6 +95,10 @@ public class SecurityConfig {
             })
             
             .authorizeHttpRequests(authz -> authz
+                // Async (the SSE stream) and error dispatches reuse the already authorized request;
+                // the JWT filter does not run again on them, so they must not be re-checked
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+                
                 // Public endpoints (no authentication required)
                 .requestMatchers("/api/auth/login", "/api/auth/register").permitAll()
                 .requestMatchers("/uploads/**").permitAll()  // Allow public access to uploaded media
@@ -102,6 +107,7 @@ public class SecurityConfig {
                 .requestMatchers("/api/user/**").authenticated()      // User profile endpoints
                 .requestMatchers("/api/posts/**").authenticated()     // Post endpoints
                 .requestMatchers("/api/admin/**").hasRole("ADMIN")    // Admin-only endpoints
+                .requestMatchers("/actuator/**").hasRole("ADMIN")     // Health and metrics
                 
                 .anyRequest().authenticated()
             )
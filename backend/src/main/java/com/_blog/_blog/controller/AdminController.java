@@ -1,19 +1,19 @@
 package com._blog._blog.controller;
 
 import com._blog._blog.entity.Post;
+import com._blog._blog.entity.PurgeJob;
 import com._blog._blog.entity.Report;
 import com._blog._blog.entity.User;
 import com._blog._blog.repository.*;
+import com._blog._blog.service.FeedService;
+import com._blog._blog.service.PostRemovalService;
+import com._blog._blog.service.UserPurgeService;
+import com._blog._blog.service.TimelineService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -32,16 +32,16 @@ public class AdminController {
     private ReportRepository reportRepository;
 
     @Autowired
-    private SubscriptionRepository subscriptionRepository;
+    private TimelineService timelineService;
 
     @Autowired
-    private LikeRepository likeRepository;
+    private FeedService feedService;
 
     @Autowired
-    private CommentRepository commentRepository;
+    private PostRemovalService postRemovalService;
 
     @Autowired
-    private NotificationRepository notificationRepository;
+    private UserPurgeService userPurgeService;
 
     // ==================== USER MANAGEMENT ====================
 
@@ -57,8 +57,9 @@ public class AdminController {
                 dto.put("role", user.getRole().toString());
                 dto.put("createdAt", user.getCreatedAt());
                 dto.put("postCount", user.getPosts() != null ? user.getPosts().size() : 0);
-                dto.put("followerCount", subscriptionRepository.countBySubscribedTo(user));
+                dto.put("followerCount", user.getFollowerCount());
                 dto.put("isBanned", user.isBanned());
+                dto.put("isDeleting", user.isDeleting());
                 return dto;
             }).collect(Collectors.toList());
 
@@ -104,7 +105,6 @@ public class AdminController {
     }
 
     @DeleteMapping("/users/{userId}")
-    @Transactional
     public ResponseEntity<?> deleteUser(@PathVariable Long userId) {
         try {
             User user = userRepository.findById(userId)
@@ -115,44 +115,47 @@ public class AdminController {
                         .body(Map.of("error", "Cannot delete admin users"));
             }
 
-            // CASCADE DELETE: Delete all related records first
-            
-            // 1. Delete all notifications related to this user (as sender or receiver)
-            notificationRepository.deleteByUser(user);
-            notificationRepository.deleteByActor(user);
-            
-            // 2. Delete all reports by this user or about this user
-            reportRepository.deleteByReporter(user);
-            reportRepository.deleteByReportedUser(user);
-            
-            // 3. Delete all subscriptions (following/followers)
-            subscriptionRepository.deleteBySubscriber(user);
-            subscriptionRepository.deleteBySubscribedTo(user);
-            
-            // 4. Delete all likes by this user
-            likeRepository.deleteByUser(user);
-            
-            // 5. Delete all comments by this user
-            commentRepository.deleteByUser(user);
-            
-            // 6. Delete all posts by this user (this will cascade delete comments on those posts)
-            postRepository.deleteByUser(user);
-            
-            // 7. Finally, delete the user
-            userRepository.delete(user);
-            
-            return ResponseEntity.ok(Map.of("message", "User and all related data deleted successfully"));
+            // The user's data is deleted in the background; progress is at GET /api/admin/jobs/{jobId}
+            PurgeJob job = userPurgeService.startPurge(user.getId());
+
+            return ResponseEntity.status(202).body(Map.of(
+                    "message", "User deletion started",
+                    "jobId", job.getId(),
+                    "status", job.getStatus()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
 
+    // ==================== JOBS ====================
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getJob(@PathVariable Long jobId) {
+        PurgeJob job = userPurgeService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Job not found"));
+        }
+
+        Map<String, Object> dto = new HashMap<>();
+        dto.put("id", job.getId());
+        dto.put("userId", job.getUserId());
+        dto.put("username", job.getUsername());
+        dto.put("status", job.getStatus());
+        dto.put("phase", job.getPhase());
+        dto.put("rowsDeleted", job.getRowsDeleted());
+        dto.put("error", job.getError());
+        dto.put("createdAt", job.getCreatedAt());
+        dto.put("updatedAt", job.getUpdatedAt());
+        dto.put("finishedAt", job.getFinishedAt());
+        return ResponseEntity.ok(dto);
+    }
+
     // ==================== POST MANAGEMENT ====================
 
     @GetMapping("/posts")
     public ResponseEntity<?> getAllPosts() {
         try {
-            List<Post> posts = postRepository.findAll();
+            List<Post> posts = postRepository.findByDeletedAtIsNullOrderByCreatedAtDesc();
             List<Map<String, Object>> postDTOs = posts.stream().map(post -> {
                 Map<String, Object> dto = new HashMap<>();
                 dto.put("id", post.getId());
@@ -160,8 +163,8 @@ public class AdminController {
                 dto.put("content", post.getDescription());
                 dto.put("username", post.getUser().getUsername());
                 dto.put("createdAt", post.getCreatedAt());
-                dto.put("likeCount", post.getLikes() != null ? post.getLikes().size() : 0);
-                dto.put("commentCount", post.getComments() != null ? post.getComments().size() : 0);
+                dto.put("likeCount", feedService.likeCount(post));
+                dto.put("commentCount", post.getCommentCount());
                 dto.put("isHidden", post.isHidden());
                 return dto;
             }).collect(Collectors.toList());
@@ -173,37 +176,13 @@ public class AdminController {
     }
 
     @DeleteMapping("/posts/{postId}")
-    @Transactional
     public ResponseEntity<?> deletePost(@PathVariable Long postId) {
         try {
-            Post post = postRepository.findById(postId)
+            Post post = postRepository.findActiveById(postId)
                     .orElseThrow(() -> new RuntimeException("Post not found"));
 
-            // CASCADE DELETE: Delete all related records first (to avoid foreign key constraints)
-            // 1. Delete all likes
-            likeRepository.deleteByPost(post);
-
-            // 2. Delete all comments
-            commentRepository.deleteByPost(post);
-
-            // 3. Delete all notifications
-            notificationRepository.deleteByPost(post);
-
-            // 4. Delete all reports
-            reportRepository.deleteByPost(post);
-
-            // 5. Delete media file if exists
-            if (post.getMediaUrl() != null && !post.getMediaUrl().isEmpty()) {
-                try {
-                    Path filePath = Paths.get("uploads/" + post.getMediaUrl().substring(post.getMediaUrl().lastIndexOf("/") + 1));
-                    Files.deleteIfExists(filePath);
-                } catch (IOException e) {
-                    System.err.println("Failed to delete media file: " + e.getMessage());
-                }
-            }
-
-            // 6. Finally delete the post
-            postRepository.delete(post);
+            // Tombstone the post; its row, related data and media file are removed by PostSweeper
+            postRemovalService.softDelete(post);
             return ResponseEntity.ok(Map.of("message", "Post deleted successfully"));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -213,11 +192,12 @@ public class AdminController {
     @PostMapping("/posts/{postId}/hide")
     public ResponseEntity<?> hidePost(@PathVariable Long postId) {
         try {
-            Post post = postRepository.findById(postId)
+            Post post = postRepository.findActiveById(postId)
                     .orElseThrow(() -> new RuntimeException("Post not found"));
 
             post.setHidden(true);
             postRepository.save(post);
+            timelineService.onPostRemoved(post.getId());
 
             return ResponseEntity.ok(Map.of("message", "Post hidden successfully"));
         } catch (Exception e) {
@@ -228,11 +208,12 @@ public class AdminController {
     @PostMapping("/posts/{postId}/unhide")
     public ResponseEntity<?> unhidePost(@PathVariable Long postId) {
         try {
-            Post post = postRepository.findById(postId)
+            Post post = postRepository.findActiveById(postId)
                     .orElseThrow(() -> new RuntimeException("Post not found"));
 
             post.setHidden(false);
             postRepository.save(post);
+            timelineService.onPostPublished(post);
 
             return ResponseEntity.ok(Map.of("message", "Post unhidden successfully"));
         } catch (Exception e) {
@@ -1,18 +1,21 @@
 package com._blog._blog.controller;
 
-import com._blog._blog.entity.Notification;
+import com._blog._blog.dto.NotificationView;
+import com._blog._blog.dto.PageCursor;
 import com._blog._blog.entity.User;
-import com._blog._blog.repository.NotificationRepository;
+import com._blog._blog.service.NotificationService;
+import com._blog._blog.service.NotificationStreamService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/notifications")
@@ -20,7 +23,70 @@ import java.util.stream.Collectors;
 public class NotificationController {
 
     @Autowired
-    private NotificationRepository notificationRepository;
+    private NotificationService notificationService;
+
+    @Autowired
+    private NotificationStreamService notificationStreamService;
+
+    /**
+     * Stream new notifications as Server-Sent Events ("notification" events carry one
+     * notification, "resync" means reload the list). Browsers resume with Last-Event-ID.
+     * EventSource cannot set headers, so the token may also be passed as access_token.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> stream(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @AuthenticationPrincipal User user) {
+        if (user == null) {
+            return ResponseEntity.status(401).build();
+        }
+        // No database access here: the request stays open for as long as the stream does
+        SseEmitter emitter = notificationStreamService.connect(user.getId(), lastEventId);
+        return ResponseEntity.ok().header("X-Accel-Buffering", "no").body(emitter);
+    }
+
+    /**
+     * One page of the current user's notification history, newest first
+     */
+    @GetMapping
+    public ResponseEntity<?> getNotifications(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @AuthenticationPrincipal User user) {
+        PageCursor pageCursor;
+        try {
+            pageCursor = PageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(Map.of("error", "Invalid cursor"));
+        }
+
+        int pageSize = PageCursor.pageSize(limit);
+        List<NotificationView> notifications = notificationService.getPage(user, pageCursor, pageSize);
+
+        String nextCursor = null;
+        if (notifications.size() > pageSize) {
+            notifications = notifications.subList(0, pageSize);
+            NotificationView last = notifications.get(pageSize - 1);
+            nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        List<Map<String, Object>> notificationDTOs = new ArrayList<>(notifications.size());
+        for (NotificationView notification : notifications) {
+            notificationDTOs.add(notificationService.toDTO(notification));
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("notifications", notificationDTOs);
+        response.put("nextCursor", nextCursor);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Number of unread notifications for the notification bell, without loading them
+     */
+    @GetMapping("/unread-count")
+    public ResponseEntity<?> getUnreadCount(@AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(Map.of("count", notificationService.getUnreadCount(user)));
+    }
 
     /**
      * Get unread notifications for the current user
@@ -28,11 +94,7 @@ public class NotificationController {
     @GetMapping("/unread")
     public ResponseEntity<?> getUnreadNotifications(@AuthenticationPrincipal User user) {
         try {
-            List<Notification> notifications = notificationRepository.findByUserAndIsReadFalseOrderByCreatedAtDesc(user);
-            
-            List<Map<String, Object>> notificationDTOs = notifications.stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+            List<Map<String, Object>> notificationDTOs = notificationService.getUnread(user);
             
             return ResponseEntity.ok(notificationDTOs);
         } catch (Exception e) {
@@ -44,12 +106,11 @@ public class NotificationController {
      * Mark a notification as read
      */
     @PutMapping("/{id}/read")
-    @Transactional
     public ResponseEntity<?> markAsRead(
             @PathVariable Long id,
             @AuthenticationPrincipal User user) {
         try {
-            notificationRepository.markAsRead(id, user.getId());
+            notificationService.markAsRead(user, id);
             return ResponseEntity.ok(Map.of("message", "Notification marked as read"));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Error marking notification as read: " + e.getMessage()));
@@ -60,36 +121,12 @@ public class NotificationController {
      * Mark all notifications as read
      */
     @PutMapping("/read-all")
-    @Transactional
     public ResponseEntity<?> markAllAsRead(@AuthenticationPrincipal User user) {
         try {
-            notificationRepository.markAllAsRead(user.getId());
+            notificationService.markAllAsRead(user);
             return ResponseEntity.ok(Map.of("message", "All notifications marked as read"));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Error marking all as read: " + e.getMessage()));
         }
     }
-
-    /**
-     * Convert Notification entity to DTO
-     */
-    private Map<String, Object> toDTO(Notification notification) {
-        Map<String, Object> dto = new HashMap<>();
-        dto.put("id", notification.getId());
-        dto.put("type", notification.getNotificationType());
-        dto.put("message", notification.getMessage());
-        dto.put("read", notification.getIsRead());
-        dto.put("createdAt", notification.getCreatedAt());
-        
-        if (notification.getActor() != null) {
-            dto.put("actorUsername", notification.getActor().getUsername());
-        }
-        
-        if (notification.getPost() != null) {
-            dto.put("postId", notification.getPost().getId());
-            dto.put("postTitle", notification.getPost().getTitle());
-        }
-        
-        return dto;
-    }
 }
@@ -1,13 +1,22 @@
 package com._blog._blog.controller;
+import com._blog._blog.dto.CommentView;
+import com._blog._blog.dto.PageCursor;
+import com._blog._blog.dto.SearchCursor;
 import com._blog._blog.entity.Post;
 import com._blog._blog.entity.User;
-import com._blog._blog.entity.Like;
 import com._blog._blog.entity.Comment;
 import com._blog._blog.repository.PostRepository;
 import com._blog._blog.repository.UserRepository;
-import com._blog._blog.repository.LikeRepository;
 import com._blog._blog.repository.CommentRepository;
+import com._blog._blog.service.FeedService;
+import com._blog._blog.service.PostRemovalService;
+import com._blog._blog.service.LikeService;
+import com._blog._blog.service.MediaStore;
+import com._blog._blog.service.PostSearchService;
+import com._blog._blog.service.PostService;
+import com._blog._blog.service.StagedMedia;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,14 +24,9 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/posts")
@@ -36,30 +40,35 @@ public class PostController {
     private UserRepository userRepository;
 
     @Autowired
-    private LikeRepository likeRepository;
+    private CommentRepository commentRepository;
 
     @Autowired
-    private CommentRepository commentRepository;
+    private FeedService feedService;
+
+    @Autowired
+    private LikeService likeService;
 
     @Autowired
-    private com._blog._blog.repository.NotificationRepository notificationRepository;
+    private PostRemovalService postRemovalService;
 
     @Autowired
-    private com._blog._blog.repository.SubscriptionRepository subscriptionRepository;
+    private MediaStore mediaStore;
 
     @Autowired
-    private com._blog._blog.repository.ReportRepository reportRepository;
+    private PostService postService;
 
-    private final String UPLOAD_DIR = "uploads/";
+    @Autowired
+    private PostSearchService postSearchService;
 
     @PostMapping
-    @Transactional
     public ResponseEntity<?> createPost(
             @RequestParam("title") String title,
             @RequestParam("description") String description,
             @RequestParam(value = "media", required = false) MultipartFile mediaFile,
+            @RequestParam(value = "uploadId", required = false) String uploadId,
             @AuthenticationPrincipal User user) {
 
+        StagedMedia staged = null;
         try {
             if (user == null) {
                 return ResponseEntity.status(401).body(Map.of("message", "User not authenticated"));
@@ -82,72 +91,90 @@ public class PostController {
 
             System.out.println("User found: " + user.getUsername());
 
-            String mediaUrl = null;
-
-            // Handle media upload if present
-            if (mediaFile != null && !mediaFile.isEmpty()) {
-                // Create upload directory if it doesn't exist
-                Path uploadPath = Paths.get(UPLOAD_DIR);
-                if (!Files.exists(uploadPath)) {
-                    Files.createDirectories(uploadPath);
-                }
-
-                // Generate unique filename
-                String originalFilename = mediaFile.getOriginalFilename();
-                String fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
-                String uniqueFilename = UUID.randomUUID().toString() + fileExtension;
-
-                // Save file
-                Path filePath = uploadPath.resolve(uniqueFilename);
-                Files.copy(mediaFile.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
-                mediaUrl = "/uploads/" + uniqueFilename;
-            }
+            // Write the media to disk before touching the database: with open-in-view the first
+            // query pins a connection for the rest of the request, so nothing may run before this
+            staged = mediaFile != null && !mediaFile.isEmpty() ? mediaStore.stage(mediaFile) : null;
 
-            // Create and save post
-            Post post = new Post(user, title, description, mediaUrl);
-            Post savedPost = postRepository.save(post);
-
-            // Create notifications for all subscribers
-            List<com._blog._blog.entity.Subscription> subscriptions = subscriptionRepository.findBySubscribedTo(user);
-            for (com._blog._blog.entity.Subscription subscription : subscriptions) {
-                User subscriber = subscription.getSubscriber();
-                String message = user.getUsername() + " published a new post: " + title;
-                com._blog._blog.entity.Notification notification = new com._blog._blog.entity.Notification(
-                    subscriber, 
-                    user, 
-                    savedPost, 
-                    "NEW_POST", 
-                    message
-                );
-                notificationRepository.save(notification);
-            }
+            // Short transaction: adopt the staged file (identical files are stored once) and save the post
+            Post savedPost = postService.createPost(user, title, description, staged, uploadId);
 
             // Return DTO with username and like info
             return ResponseEntity.ok(postToDTO(savedPost, user));
 
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(Map.of("message", e.getMessage()));
         } catch (IOException e) {
             return ResponseEntity.status(500).body(Map.of("message", "Failed to upload media file"));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Failed to create post: " + e.getMessage()));
+        } finally {
+            // No-op once the file has been moved into the store
+            mediaStore.discard(staged);
         }
     }
 
     @GetMapping
     @Transactional
-    public ResponseEntity<?> getAllPosts(@AuthenticationPrincipal User user) {
-        List<Post> posts;
-        
-            posts = postRepository.findByIsHiddenFalseOrderByCreatedAtDesc();
-        
+    public ResponseEntity<?> getAllPosts(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @AuthenticationPrincipal User user) {
+        PageCursor pageCursor;
+        try {
+            pageCursor = PageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(Map.of("message", "Invalid cursor"));
+        }
+
+        // Clamp the page size, fetch one extra row to know if there is a next page
+        int pageSize = PageCursor.pageSize(limit);
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+
+        List<Post> posts = pageCursor == null
+                ? postRepository.findVisibleFeed(pageRequest)
+                : postRepository.findVisibleFeedBefore(pageCursor.getCreatedAt(), pageCursor.getId(), pageRequest);
+
+        String nextCursor = null;
+        if (posts.size() > pageSize) {
+            posts = posts.subList(0, pageSize);
+            Post last = posts.get(pageSize - 1);
+            nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
         
         // Convert to DTOs to include username and like info
-        List<Map<String, Object>> postDTOs = posts.stream()
-                .map(post -> postToDTO(post, user))
-                .collect(java.util.stream.Collectors.toList());
+        List<Map<String, Object>> postDTOs = feedService.toDTOs(posts, user);
         
-        return ResponseEntity.ok(postDTOs);
+        Map<String, Object> response = new HashMap<>();
+        response.put("posts", postDTOs);
+        response.put("nextCursor", nextCursor);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/search")
+    @Transactional
+    public ResponseEntity<?> searchPosts(
+            @RequestParam("q") String query,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @AuthenticationPrincipal User user) {
+        if (query.isBlank() || query.length() > 200) {
+            return ResponseEntity.status(400).body(Map.of("message", "Search query must be 1 to 200 characters"));
+        }
+        SearchCursor searchCursor;
+        try {
+            searchCursor = SearchCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(Map.of("message", "Invalid cursor"));
+        }
+
+        // Ranked by relevance, newest first among equally relevant posts
+        PostSearchService.SearchPage page = postSearchService.search(query.trim(), searchCursor, PageCursor.pageSize(limit));
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("posts", feedService.toDTOs(page.getPosts(), user));
+        response.put("nextCursor", page.getNextCursor());
+        return ResponseEntity.ok(response);
     }
 
     @GetMapping("/user/{username}")
@@ -164,19 +191,16 @@ public class PostController {
         // Get user's posts (admins see all, regular users don't see hidden posts)
         List<Post> posts;
        
-            posts = postRepository.findByUserAndIsHiddenFalseOrderByCreatedAtDesc(user);
+            posts = postRepository.findByUserAndIsHiddenFalseAndDeletedAtIsNullOrderByCreatedAtDesc(user);
         
         
         // Convert to DTOs to include username and like info
-        List<Map<String, Object>> postDTOs = posts.stream()
-                .map(post -> postToDTO(post, currentUser))
-                .collect(java.util.stream.Collectors.toList());
+        List<Map<String, Object>> postDTOs = feedService.toDTOs(posts, currentUser);
         
         return ResponseEntity.ok(postDTOs);
     }
 
     @DeleteMapping("/{postId}")
-    @Transactional
     public ResponseEntity<?> deletePost(
             @PathVariable Long postId,
             @AuthenticationPrincipal User user) {
@@ -186,7 +210,7 @@ public class PostController {
             }
 
 
-            Post post = postRepository.findById(postId)
+            Post post = postRepository.findActiveById(postId)
                     .orElseThrow(() -> new RuntimeException("Post not found"));
 
             // Check if user owns the post or is an admin
@@ -195,31 +219,8 @@ public class PostController {
             }
 
 
-            // Delete all related data first (to avoid foreign key constraints)
-            // 1. Delete all likes
-            likeRepository.deleteByPost(post);
-
-            // 2. Delete all comments
-            commentRepository.deleteByPost(post);
-
-            // 3. Delete all notifications
-            notificationRepository.deleteByPost(post);
-
-            // 4. Delete all reports
-            reportRepository.deleteByPost(post);
-
-            // Delete media file if exists
-            if (post.getMediaUrl() != null && !post.getMediaUrl().isEmpty()) {
-                try {
-                    Path filePath = Paths.get(UPLOAD_DIR + post.getMediaUrl().substring(post.getMediaUrl().lastIndexOf("/") + 1));
-                    Files.deleteIfExists(filePath);
-                } catch (IOException e) {
-                    System.err.println("Failed to delete media file: " + e.getMessage());
-                }
-            }
-
-            // Finally delete the post
-            postRepository.delete(post);
+            // Tombstone the post; its row, related data and media file are removed by PostSweeper
+            postRemovalService.softDelete(post);
             return ResponseEntity.ok(Map.of("message", "Post deleted successfully"));
 
         } catch (Exception e) {
@@ -228,14 +229,15 @@ public class PostController {
     }
 
     @PutMapping("/{postId}")
-    @Transactional
     public ResponseEntity<?> updatePost(
             @PathVariable Long postId,
             @RequestParam("title") String title,
             @RequestParam("description") String description,
             @RequestParam(value = "media", required = false) MultipartFile mediaFile,
+            @RequestParam(value = "uploadId", required = false) String uploadId,
             @RequestParam(value = "removeMedia", required = false) Boolean removeMedia,
             @AuthenticationPrincipal User user) {
+        StagedMedia staged = null;
         try {
             if (user == null) {
                 return ResponseEntity.status(401).body(Map.of("message", "User not authenticated"));
@@ -254,7 +256,10 @@ public class PostController {
                 return ResponseEntity.status(400).body(Map.of("message", "Description must not exceed 5000 characters"));
             }
             
-            Post post = postRepository.findById(postId)
+            // Write new media to disk before the first query pins a connection (see createPost)
+            staged = mediaFile != null && !mediaFile.isEmpty() ? mediaStore.stage(mediaFile) : null;
+
+            Post post = postRepository.findActiveById(postId)
                     .orElseThrow(() -> new RuntimeException("Post not found"));
             
             // Check if user owns the post or is an admin
@@ -262,79 +267,53 @@ public class PostController {
                 return ResponseEntity.status(403).body(Map.of("message", "You don't have permission to edit this post"));
             }
 
-            // Update title and description
-            post.setTitle(title);
-            post.setDescription(description);
-
-            // Handle media removal
-            if (removeMedia != null && removeMedia && post.getMediaUrl() != null) {
-                try {
-                    Path filePath = Paths.get(UPLOAD_DIR + post.getMediaUrl().substring(post.getMediaUrl().lastIndexOf("/") + 1));
-                    Files.deleteIfExists(filePath);
-                } catch (IOException e) {
-                    System.err.println("Failed to delete old media file: " + e.getMessage());
-                }
-                post.setMediaUrl(null);
-            }
-
-            // Handle new media upload
-            if (mediaFile != null && !mediaFile.isEmpty()) {
-                // Delete old media if exists
-                if (post.getMediaUrl() != null) {
-                    try {
-                        Path oldFilePath = Paths.get(UPLOAD_DIR + post.getMediaUrl().substring(post.getMediaUrl().lastIndexOf("/") + 1));
-                        Files.deleteIfExists(oldFilePath);
-                    } catch (IOException e) {
-                        System.err.println("Failed to delete old media file: " + e.getMessage());
-                    }
-                }
-
-                // Upload new media
-                Path uploadPath = Paths.get(UPLOAD_DIR);
-                if (!Files.exists(uploadPath)) {
-                    Files.createDirectories(uploadPath);
-                }
-
-                String originalFilename = mediaFile.getOriginalFilename();
-                String fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
-                String uniqueFilename = UUID.randomUUID().toString() + fileExtension;
-
-                Path filePath = uploadPath.resolve(uniqueFilename);
-                Files.copy(mediaFile.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
-                post.setMediaUrl("/uploads/" + uniqueFilename);
-            }
-
-            Post updatedPost = postRepository.save(post);
+            // A bad upload id fails before the post is touched
+            Post updatedPost = postService.updatePost(post, user, title, description,
+                    removeMedia != null && removeMedia, staged, uploadId);
             
             // Return DTO with username and like info
             return ResponseEntity.ok(postToDTO(updatedPost, user));
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(Map.of("message", e.getMessage()));
         } catch (IOException e) {
             return ResponseEntity.status(500).body(Map.of("message", "Failed to upload media file"));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Failed to update post: " + e.getMessage()));
+        } finally {
+            mediaStore.discard(staged);
         }
     }
 
     // Helper method to convert Post to DTO with like information
     private Map<String, Object> postToDTO(Post post, User currentUser) {
-        Map<String, Object> dto = new HashMap<>();
-        dto.put("id", post.getId());
-        dto.put("title", post.getTitle());
-        dto.put("description", post.getDescription());
-        dto.put("mediaUrl", post.getMediaUrl() != null ? post.getMediaUrl() : "");
-        dto.put("createdAt", post.getCreatedAt());
-        dto.put("username", post.getUser().getUsername());
-        dto.put("likeCount", likeRepository.countByPost(post));
-        dto.put("isLiked", currentUser != null && likeRepository.existsByPostAndUser(post, currentUser));
-        dto.put("commentCount", commentRepository.countByPost(post));
-        return dto;
+        return feedService.toDTO(post, currentUser);
+    }
+
+    // Set the current user's like on a post; idempotent, repeating a request changes nothing
+    @PutMapping("/{postId}/like")
+    public ResponseEntity<?> setLike(
+            @PathVariable Long postId,
+            @RequestParam boolean state,
+            @AuthenticationPrincipal User user) {
+        try {
+            if (user == null) {
+                return ResponseEntity.status(401).body(Map.of("message", "User not authenticated"));
+            }
+
+            LikeService.LikeState likeState = likeService.setLiked(postId, user, state);
+            if (likeState == null) {
+                return ResponseEntity.status(404).body(Map.of("message", "Post not found"));
+            }
+            return ResponseEntity.ok(likeStateToResponse(likeState));
+
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("message", "Failed to update like: " + e.getMessage()));
+        }
     }
 
     // Like a post
     @PostMapping("/{postId}/like")
-    @Transactional
     public ResponseEntity<?> likePost(
             @PathVariable Long postId,
             @AuthenticationPrincipal User user) {
@@ -343,23 +322,14 @@ public class PostController {
                 return ResponseEntity.status(401).body(Map.of("message", "User not authenticated"));
             }
 
-            Post post = postRepository.findById(postId)
-                    .orElseThrow(() -> new RuntimeException("Post not found"));
-
-            // Check if user has already liked the post
-            if (likeRepository.existsByPostAndUser(post, user)) {
+            LikeService.LikeState likeState = likeService.setLiked(postId, user, true);
+            if (likeState == null) {
+                return ResponseEntity.status(404).body(Map.of("message", "Post not found"));
+            }
+            if (!likeState.isChanged()) {
                 return ResponseEntity.status(400).body(Map.of("message", "Post already liked"));
             }
-
-            // Create and save like
-            Like like = new Like(post, user);
-            likeRepository.save(like);
-
-            // Return updated like count and status
-            Map<String, Object> response = new HashMap<>();
-            response.put("likeCount", likeRepository.countByPost(post));
-            response.put("isLiked", true);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(likeStateToResponse(likeState));
 
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Failed to like post: " + e.getMessage()));
@@ -368,7 +338,6 @@ public class PostController {
 
     // Unlike a post
     @DeleteMapping("/{postId}/like")
-    @Transactional
     public ResponseEntity<?> unlikePost(
             @PathVariable Long postId,
             @AuthenticationPrincipal User user) {
@@ -377,49 +346,65 @@ public class PostController {
                 return ResponseEntity.status(401).body(Map.of("message", "User not authenticated"));
             }
 
-            Post post = postRepository.findById(postId)
-                    .orElseThrow(() -> new RuntimeException("Post not found"));
-
-            // Check if user has liked the post
-            if (!likeRepository.existsByPostAndUser(post, user)) {
+            LikeService.LikeState likeState = likeService.setLiked(postId, user, false);
+            if (likeState == null) {
+                return ResponseEntity.status(404).body(Map.of("message", "Post not found"));
+            }
+            if (!likeState.isChanged()) {
                 return ResponseEntity.status(400).body(Map.of("message", "Post not liked yet"));
             }
-
-            // Delete the like
-            likeRepository.deleteByPostAndUser(post, user);
-
-            // Return updated like count and status
-            Map<String, Object> response = new HashMap<>();
-            response.put("likeCount", likeRepository.countByPost(post));
-            response.put("isLiked", false);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(likeStateToResponse(likeState));
 
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Failed to unlike post: " + e.getMessage()));
         }
     }
 
-    // Get comments for a post
+    // Return updated like count and status
+    private Map<String, Object> likeStateToResponse(LikeService.LikeState likeState) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("likeCount", likeState.getLikeCount());
+        response.put("isLiked", likeState.isLiked());
+        return response;
+    }
+
+    // Get one page of comments for a post, newest first
     @GetMapping("/{postId}/comments")
-    @Transactional
-    public ResponseEntity<?> getComments(@PathVariable Long postId) {
+    public ResponseEntity<?> getComments(
+            @PathVariable Long postId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        PageCursor pageCursor;
         try {
-            Post post = postRepository.findById(postId)
-                    .orElseThrow(() -> new RuntimeException("Post not found"));
+            pageCursor = PageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(Map.of("message", "Invalid cursor"));
+        }
 
-            List<Comment> comments = commentRepository.findByPostOrderByCreatedAtDesc(post);
+        try {
+            if (!postRepository.existsByIdAndDeletedAtIsNull(postId)) {
+                return ResponseEntity.status(404).body(Map.of("message", "Post not found"));
+            }
 
-            // Convert to DTOs
-            List<Map<String, Object>> commentDTOs = comments.stream().map(comment -> {
-                Map<String, Object> dto = new HashMap<>();
-                dto.put("id", comment.getId());
-                dto.put("content", comment.getContent());
-                dto.put("username", comment.getUser().getUsername());
-                dto.put("createdAt", comment.getCreatedAt());
-                return dto;
-            }).collect(java.util.stream.Collectors.toList());
+            // Clamp the page size, fetch one extra row to know if there is a next page
+            int pageSize = PageCursor.pageSize(limit);
+            PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
 
-            return ResponseEntity.ok(commentDTOs);
+            List<CommentView> comments = pageCursor == null
+                    ? commentRepository.findPage(postId, pageRequest)
+                    : commentRepository.findPageBefore(postId, pageCursor.getCreatedAt(), pageCursor.getId(), pageRequest);
+
+            String nextCursor = null;
+            if (comments.size() > pageSize) {
+                comments = comments.subList(0, pageSize);
+                CommentView last = comments.get(pageSize - 1);
+                nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("comments", comments);
+            response.put("nextCursor", nextCursor);
+            return ResponseEntity.ok(response);
 
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Failed to get comments: " + e.getMessage()));
@@ -448,12 +433,17 @@ public class PostController {
                 return ResponseEntity.status(400).body(Map.of("message", "Comment must not exceed 1000 characters"));
             }
 
-            Post post = postRepository.findById(postId)
+            Post post = postRepository.findActiveById(postId)
                     .orElseThrow(() -> new RuntimeException("Post not found"));
+            // Posts of a user being purged are treated as gone: a new comment would block the purge
+            if (post.getUser().isDeleting()) {
+                throw new RuntimeException("Post not found");
+            }
 
             // Create and save comment
             Comment comment = new Comment(post, user, content.trim());
             Comment savedComment = commentRepository.save(comment);
+            Long commentCount = postRepository.adjustCommentCount(post.getId(), 1);
 
             // Return comment DTO
             Map<String, Object> response = new HashMap<>();
@@ -461,7 +451,7 @@ public class PostController {
             response.put("content", savedComment.getContent());
             response.put("username", user.getUsername());
             response.put("createdAt", savedComment.getCreatedAt());
-            response.put("commentCount", commentRepository.countByPost(post));
+            response.put("commentCount", commentCount);
 
             return ResponseEntity.ok(response);
 
@@ -486,7 +476,7 @@ public class PostController {
                     .orElseThrow(() -> new RuntimeException("Comment not found"));
 
             // Check if user owns the comment or the post
-            Post post = postRepository.findById(postId)
+            Post post = postRepository.findActiveById(postId)
                     .orElseThrow(() -> new RuntimeException("Post not found"));
 
             if (!comment.getUser().getId().equals(user.getId()) && !post.getUser().getId().equals(user.getId())) {
@@ -494,10 +484,11 @@ public class PostController {
             }
 
             commentRepository.delete(comment);
+            Long commentCount = postRepository.adjustCommentCount(post.getId(), -1);
 
             Map<String, Object> response = new HashMap<>();
             response.put("message", "Comment deleted successfully");
-            response.put("commentCount", commentRepository.countByPost(post));
+            response.put("commentCount", commentCount);
             return ResponseEntity.ok(response);
 
         } catch (Exception e) {
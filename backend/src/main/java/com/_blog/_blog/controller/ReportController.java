@@ -68,7 +68,7 @@ public class ReportController {
             
             
             // Find the post
-            Post post = postRepository.findById(postId)
+            Post post = postRepository.findActiveById(postId)
                     .orElseThrow(() -> new RuntimeException("Post not found"));
             
             User postAuthor = post.getUser();
@@ -1,15 +1,21 @@
 package com._blog._blog.controller;
 
+import com._blog._blog.dto.PageCursor;
 import com._blog._blog.entity.Subscription;
 import com._blog._blog.entity.User;
 import com._blog._blog.repository.SubscriptionRepository;
 import com._blog._blog.repository.UserRepository;
+import com._blog._blog.service.FollowGraph;
+import com._blog._blog.service.TimelineService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +31,15 @@ public class SubscriptionController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private TimelineService timelineService;
+
+    @Autowired
+    private FollowGraph followGraph;
+
+    @Value("${app.follows.suggestions.limit:10}")
+    private int suggestionLimit;
+
     /**
      * Subscribe to a user
      */
@@ -42,7 +57,8 @@ public class SubscriptionController {
         User userToSubscribe = userRepository.findByUsername(username)
                 .orElse(null);
         
-        if (userToSubscribe == null) {
+        // A user being purged is treated as gone: a new subscription would block the purge
+        if (userToSubscribe == null || userToSubscribe.isDeleting()) {
             return ResponseEntity.status(404).body(Map.of("error", "User not found"));
         }
 
@@ -56,15 +72,21 @@ public class SubscriptionController {
             return ResponseEntity.status(400).body(Map.of("error", "Already subscribed"));
         }
 
-        // Create subscription
+        // Create subscription and count it on both sides
         Subscription subscription = new Subscription(currentUser, userToSubscribe);
         subscriptionRepository.save(subscription);
+        userRepository.adjustFollowingCount(currentUser.getId(), 1);
+        Long subscriberCount = userRepository.adjustFollowerCount(userToSubscribe.getId(), 1);
+        followGraph.onSubscribed(currentUser.getId(), userToSubscribe.getId());
+
+        // Backfill the author's recent posts into the subscriber's home timeline
+        timelineService.onSubscribed(currentUser.getId(), userToSubscribe.getId());
 
         // Return updated counts
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Subscribed successfully");
         response.put("isSubscribed", true);
-        response.put("subscriberCount", subscriptionRepository.countBySubscribedTo(userToSubscribe));
+        response.put("subscriberCount", subscriberCount);
         
         return ResponseEntity.ok(response);
     }
@@ -90,14 +112,20 @@ public class SubscriptionController {
             return ResponseEntity.status(404).body(Map.of("error", "User not found"));
         }
 
-        // Delete subscription
-        subscriptionRepository.deleteBySubscriberAndSubscribedTo(currentUser, userToUnsubscribe);
+        // Delete subscription; the counters only move if there was one
+        long subscriberCount = userToUnsubscribe.getFollowerCount();
+        if (subscriptionRepository.deleteBySubscriberAndSubscribedTo(currentUser, userToUnsubscribe) > 0) {
+            userRepository.adjustFollowingCount(currentUser.getId(), -1);
+            subscriberCount = userRepository.adjustFollowerCount(userToUnsubscribe.getId(), -1);
+            followGraph.onUnsubscribed(currentUser.getId(), userToUnsubscribe.getId());
+        }
+        timelineService.onUnsubscribed(currentUser.getId(), userToUnsubscribe.getId());
 
         // Return updated counts
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Unsubscribed successfully");
         response.put("isSubscribed", false);
-        response.put("subscriberCount", subscriptionRepository.countBySubscribedTo(userToUnsubscribe));
+        response.put("subscriberCount", subscriberCount);
         
         return ResponseEntity.ok(response);
     }
@@ -121,8 +149,8 @@ public class SubscriptionController {
             return ResponseEntity.status(404).body(Map.of("error", "User not found"));
         }
 
-        boolean isSubscribed = subscriptionRepository.existsBySubscriberAndSubscribedTo(currentUser, targetUser);
-        long subscriberCount = subscriptionRepository.countBySubscribedTo(targetUser);
+        boolean isSubscribed = followGraph.isFollowing(currentUser.getId(), targetUser.getId());
+        long subscriberCount = targetUser.getFollowerCount();
         
         Map<String, Object> response = new HashMap<>();
         response.put("isSubscribed", isSubscribed);
@@ -132,10 +160,13 @@ public class SubscriptionController {
     }
 
     /**
-     * Get user's subscribers
+     * One page of a user's subscribers, in id order
      */
     @GetMapping("/{username}/subscribers")
-    public ResponseEntity<?> getSubscribers(@PathVariable String username) {
+    public ResponseEntity<?> getSubscribers(
+            @PathVariable String username,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
         User user = userRepository.findByUsername(username)
                 .orElse(null);
         
@@ -143,25 +174,17 @@ public class SubscriptionController {
             return ResponseEntity.status(404).body(Map.of("error", "User not found"));
         }
 
-        List<Subscription> subscriptions = subscriptionRepository.findBySubscribedTo(user);
-        
-        List<Map<String, Object>> subscribers = subscriptions.stream()
-                .map(sub -> {
-                    Map<String, Object> dto = new HashMap<>();
-                    dto.put("username", sub.getSubscriber().getUsername());
-                    dto.put("email", sub.getSubscriber().getEmail());
-                    return dto;
-                })
-                .collect(Collectors.toList());
-        
-        return ResponseEntity.ok(subscribers);
+        return toUserPage(followGraph.followers(user.getId()), cursor, limit);
     }
 
     /**
-     * Get users that a user is subscribed to
+     * One page of the users a user is subscribed to, in id order
      */
     @GetMapping("/{username}/subscriptions")
-    public ResponseEntity<?> getSubscriptions(@PathVariable String username) {
+    public ResponseEntity<?> getSubscriptions(
+            @PathVariable String username,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
         User user = userRepository.findByUsername(username)
                 .orElse(null);
         
@@ -169,17 +192,75 @@ public class SubscriptionController {
             return ResponseEntity.status(404).body(Map.of("error", "User not found"));
         }
 
-        List<Subscription> subscriptions = subscriptionRepository.findBySubscriber(user);
-        
-        List<Map<String, Object>> subscribedTo = subscriptions.stream()
-                .map(sub -> {
-                    Map<String, Object> dto = new HashMap<>();
-                    dto.put("username", sub.getSubscribedTo().getUsername());
-                    dto.put("email", sub.getSubscribedTo().getEmail());
-                    return dto;
-                })
-                .collect(Collectors.toList());
-        
-        return ResponseEntity.ok(subscribedTo);
+        return toUserPage(followGraph.following(user.getId()), cursor, limit);
+    }
+
+    /**
+     * Who to follow: users followed by the users the current user follows, most shared first
+     */
+    @GetMapping("/suggestions")
+    public ResponseEntity<?> getSuggestions(@AuthenticationPrincipal User currentUser) {
+        if (currentUser == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "User not authenticated"));
+        }
+
+        // Ranked in memory; only the chosen users are read from the database, in one query
+        List<FollowGraph.Suggestion> suggestions = followGraph.suggest(currentUser.getId(), suggestionLimit);
+        Map<Long, User> users = new HashMap<>();
+        userRepository.findAllById(suggestions.stream().map(FollowGraph.Suggestion::getUserId).collect(Collectors.toList()))
+                .forEach(user -> users.put(user.getId(), user));
+
+        List<Map<String, Object>> suggestionDTOs = new ArrayList<>(suggestions.size());
+        for (FollowGraph.Suggestion suggestion : suggestions) {
+            User user = users.get(suggestion.getUserId());
+            if (user == null || user.isDeleting()) {
+                continue;
+            }
+            Map<String, Object> dto = new HashMap<>();
+            dto.put("id", user.getId());
+            dto.put("username", user.getUsername());
+            dto.put("role", user.getRole());
+            dto.put("subscriberCount", user.getFollowerCount());
+            dto.put("mutualCount", suggestion.getMutualCount());
+            dto.put("isSubscribed", false);
+            suggestionDTOs.add(dto);
+        }
+        return ResponseEntity.ok(suggestionDTOs);
+    }
+
+    // One page of the given sorted user ids, in id order. The cursor is the last id of the previous
+    // page, so only the users on this page are read from the database; total is the full list length
+    private ResponseEntity<?> toUserPage(long[] userIds, String cursor, Integer limit) {
+        int from = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                int position = Arrays.binarySearch(userIds, Long.parseLong(cursor));
+                from = position >= 0 ? position + 1 : -position - 1;
+            } catch (NumberFormatException e) {
+                return ResponseEntity.status(400).body(Map.of("error", "Invalid cursor"));
+            }
+        }
+        int to = Math.min(from + PageCursor.pageSize(limit), userIds.length);
+
+        List<Long> ids = Arrays.stream(userIds, from, to).boxed().collect(Collectors.toList());
+        Map<Long, User> users = new HashMap<>();
+        userRepository.findAllById(ids).forEach(user -> users.put(user.getId(), user));
+
+        List<Map<String, Object>> userDTOs = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            User user = users.get(id);
+            if (user == null) {
+                continue;
+            }
+            Map<String, Object> dto = new HashMap<>();
+            dto.put("username", user.getUsername());
+            dto.put("email", user.getEmail());
+            userDTOs.add(dto);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("users", userDTOs);
+        response.put("nextCursor", to < userIds.length ? String.valueOf(userIds[to - 1]) : null);
+        response.put("total", userIds.length);
+        return ResponseEntity.ok(response);
     }
 }
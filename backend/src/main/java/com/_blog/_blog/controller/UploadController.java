@@ -0,0 +1,188 @@
+package com._blog._blog.controller;
+
+import com._blog._blog.entity.UploadSession;
+import com._blog._blog.entity.User;
+import com._blog._blog.service.UploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resumable uploads for large media:
+ * POST /api/uploads {filename, size} creates a session and returns its chunk size,
+ * PUT /api/uploads/{id}?offset=N sends one chunk as the raw request body (any order, retries are fine),
+ * GET /api/uploads/{id} tells which chunks are still missing,
+ * POST /api/uploads/{id}/complete {sha256} verifies the file,
+ * and the uploadId is then passed to createPost/updatePost instead of a media file.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+public class UploadController {
+
+    @Autowired
+    private UploadService uploadService;
+
+    @PostMapping
+    public ResponseEntity<?> createUpload(
+            @RequestBody Map<String, Object> request,
+            @AuthenticationPrincipal User user) {
+        try {
+            if (user == null) {
+                return ResponseEntity.status(401).body(Map.of("message", "User not authenticated"));
+            }
+
+            String filename = (String) request.get("filename");
+            if (filename == null || filename.trim().isEmpty()) {
+                return ResponseEntity.status(400).body(Map.of("message", "Filename is required"));
+            }
+            if (!(request.get("size") instanceof Number)) {
+                return ResponseEntity.status(400).body(Map.of("message", "Size is required"));
+            }
+            long size = ((Number) request.get("size")).longValue();
+            if (size <= 0 || size > uploadService.getMaxSize()) {
+                return ResponseEntity.status(400).body(Map.of("message",
+                        "Size must be between 1 and " + uploadService.getMaxSize() + " bytes"));
+            }
+
+            UploadSession session = uploadService.create(user, filename.trim(), size);
+            return ResponseEntity.status(201).body(sessionToDTO(session));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(429).body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("message", "Failed to create upload: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<?> getUpload(
+            @PathVariable String uploadId,
+            @AuthenticationPrincipal User user) {
+        if (user == null) {
+            return ResponseEntity.status(401).body(Map.of("message", "User not authenticated"));
+        }
+        UploadSession session = uploadService.get(uploadId, user);
+        if (session == null) {
+            return ResponseEntity.status(404).body(Map.of("message", "Upload not found"));
+        }
+        return ResponseEntity.ok(sessionToDTO(session));
+    }
+
+    @PutMapping("/{uploadId}")
+    public ResponseEntity<?> putChunk(
+            @PathVariable String uploadId,
+            @RequestParam("offset") long offset,
+            HttpServletRequest request,
+            @AuthenticationPrincipal User user) {
+        try {
+            if (user == null) {
+                return ResponseEntity.status(401).body(Map.of("message", "User not authenticated"));
+            }
+            // No JPA before the body is read: it would pin a connection for the whole chunk
+            UploadSession session = uploadService.getForWrite(uploadId, user);
+            if (session == null) {
+                return ResponseEntity.status(404).body(Map.of("message", "Upload not found"));
+            }
+            if (!UploadService.OPEN.equals(session.getStatus())) {
+                return ResponseEntity.status(409).body(Map.of("message", "Upload already completed"));
+            }
+            if (offset < 0 || offset >= session.getTotalSize() || offset % session.getChunkSize() != 0) {
+                return ResponseEntity.status(400).body(Map.of("message",
+                        "Offset must be a multiple of " + session.getChunkSize() + " within the file"));
+            }
+            long expected = uploadService.chunkLength(session, offset);
+            if (request.getContentLengthLong() != expected) {
+                return ResponseEntity.status(400).body(Map.of("message",
+                        "Chunk at offset " + offset + " must be exactly " + expected + " bytes"));
+            }
+
+            if (!uploadService.writeChunk(session, offset, request.getInputStream())) {
+                return ResponseEntity.status(400).body(Map.of("message", "Incomplete chunk, please retry"));
+            }
+            return ResponseEntity.ok(sessionToDTO(uploadService.get(uploadId, user)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("message", "Failed to write chunk: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<?> completeUpload(
+            @PathVariable String uploadId,
+            @RequestBody Map<String, String> request,
+            @AuthenticationPrincipal User user) {
+        try {
+            if (user == null) {
+                return ResponseEntity.status(401).body(Map.of("message", "User not authenticated"));
+            }
+            UploadSession session = uploadService.get(uploadId, user);
+            if (session == null) {
+                return ResponseEntity.status(404).body(Map.of("message", "Upload not found"));
+            }
+            if (UploadService.COMPLETE.equals(session.getStatus())) {
+                return ResponseEntity.ok(sessionToDTO(session));
+            }
+            String sha256 = request.get("sha256");
+            if (sha256 == null || sha256.trim().isEmpty()) {
+                return ResponseEntity.status(400).body(Map.of("message", "sha256 is required"));
+            }
+            if (session.getReceivedCount() < session.getChunkCount()) {
+                return ResponseEntity.status(409).body(Map.of("message", "Upload is missing chunks"));
+            }
+
+            if (!uploadService.complete(session, sha256.trim())) {
+                return ResponseEntity.status(400).body(Map.of("message", "Checksum mismatch"));
+            }
+            return ResponseEntity.ok(sessionToDTO(session));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("message", "Failed to complete upload: " + e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<?> cancelUpload(
+            @PathVariable String uploadId,
+            @AuthenticationPrincipal User user) {
+        try {
+            if (user == null) {
+                return ResponseEntity.status(401).body(Map.of("message", "User not authenticated"));
+            }
+            UploadSession session = uploadService.get(uploadId, user);
+            if (session == null) {
+                return ResponseEntity.status(404).body(Map.of("message", "Upload not found"));
+            }
+            uploadService.cancel(session);
+            return ResponseEntity.ok(Map.of("message", "Upload cancelled"));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("message", "Failed to cancel upload: " + e.getMessage()));
+        }
+    }
+
+    private Map<String, Object> sessionToDTO(UploadSession session) {
+        List<Long> missingOffsets = new ArrayList<>();
+        for (int chunk = 0; chunk < session.getChunkCount(); chunk++) {
+            if (!session.isReceived(chunk)) {
+                missingOffsets.add((long) chunk * session.getChunkSize());
+            }
+        }
+        Map<String, Object> dto = new HashMap<>();
+        dto.put("uploadId", session.getId());
+        dto.put("filename", session.getFilename());
+        dto.put("size", session.getTotalSize());
+        dto.put("chunkSize", session.getChunkSize());
+        dto.put("chunkCount", session.getChunkCount());
+        dto.put("receivedChunks", session.getReceivedCount());
+        dto.put("missingOffsets", missingOffsets);
+        dto.put("status", session.getStatus());
+        return dto;
+    }
+}
@@ -1,108 +1,154 @@
 package com._blog._blog.controller;
 
+import com._blog._blog.dto.PageCursor;
 import com._blog._blog.entity.Post;
 import com._blog._blog.entity.User;
-import com._blog._blog.repository.PostRepository;
-import com._blog._blog.repository.LikeRepository;
-import com._blog._blog.repository.CommentRepository;
-import com._blog._blog.repository.SubscriptionRepository;
 import com._blog._blog.repository.UserRepository;
+import com._blog._blog.service.FeedService;
+import com._blog._blog.service.FollowGraph;
+import com._blog._blog.service.TimelineService;
+import com._blog._blog.service.UserSearchService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/user")
 public class UserController {
 
     @Autowired
-    private PostRepository postRepository;
+    private UserRepository userRepository;
 
     @Autowired
-    private LikeRepository likeRepository;
+    private FeedService feedService;
 
     @Autowired
-    private CommentRepository commentRepository;
+    private TimelineService timelineService;
 
     @Autowired
-    private SubscriptionRepository subscriptionRepository;
+    private UserSearchService userSearchService;
 
     @Autowired
-    private UserRepository userRepository;
+    private FollowGraph followGraph;
 
     /**
-     * Get posts for the dashboard (only from subscribed users)
+     * Get posts for the dashboard (only from subscribed users), read from the
+     * materialized home timeline with cursor pagination
      */
     @GetMapping("/me")
-    @Transactional
-    public ResponseEntity<?> getSubscribedUsersPosts(@AuthenticationPrincipal User user) {
+    public ResponseEntity<?> getSubscribedUsersPosts(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @AuthenticationPrincipal User user) {
         if (user == null) {
             return ResponseEntity.status(401).body(Map.of("error", "User not authenticated"));
         }
-        
-        // Get IDs of users that the current user is subscribed to
-        List<Long> subscribedUserIds = subscriptionRepository.findSubscribedToUserIds(user.getId());
-        
-        // Fetch posts only from subscribed users, or all posts if not subscribed to anyone
-        List<Post> posts;
-        
-                posts = postRepository.findByUserIdInAndIsHiddenFalseOrderByCreatedAtDesc(subscribedUserIds);
-            
+
+        PageCursor pageCursor;
+        try {
+            pageCursor = PageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(Map.of("error", "Invalid cursor"));
+        }
+
+        int pageSize = PageCursor.pageSize(limit);
+        List<Post> posts = timelineService.readPage(user.getId(), pageCursor, pageSize);
+
+        String nextCursor = null;
+        if (posts.size() > pageSize) {
+            posts = posts.subList(0, pageSize);
+            Post last = posts.get(pageSize - 1);
+            nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
 
         // Convert to DTOs to avoid lazy loading issues and include username and like info
-        List<Map<String, Object>> postDTOs = posts.stream().map(post -> {
-            Map<String, Object> dto = new HashMap<>();
-            dto.put("id", post.getId());
-            dto.put("title", post.getTitle());
-            dto.put("description", post.getDescription());
-            dto.put("mediaUrl", post.getMediaUrl() != null ? post.getMediaUrl() : "");
-            dto.put("createdAt", post.getCreatedAt());
-            dto.put("username", post.getUser().getUsername());
-            dto.put("likeCount", likeRepository.countByPost(post));
-            dto.put("isLiked", likeRepository.existsByPostAndUser(post, user));
-            dto.put("commentCount", commentRepository.countByPost(post));
-            return dto;
-        }).collect(Collectors.toList());
-        
-        return ResponseEntity.ok(postDTOs);
+        Map<String, Object> response = new HashMap<>();
+        response.put("posts", feedService.toDTOs(posts, user));
+        response.put("nextCursor", nextCursor);
+        return ResponseEntity.ok(response);
     }
 
     /**
-     * Get all users with subscription info
+     * One page of the user directory with subscription info, newest members first
      */
-    @GetMapping("/all")
-    public ResponseEntity<?> getAllUsers(@AuthenticationPrincipal User currentUser) {
+    @GetMapping("/directory")
+    public ResponseEntity<?> getUserDirectory(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @AuthenticationPrincipal User currentUser) {
+        if (currentUser == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "User not authenticated"));
+        }
+
+        PageCursor pageCursor;
         try {
-            List<User> users = userRepository.findAll();
-            
-            // Get current user's subscriptions
-            List<Long> subscribedUserIds = subscriptionRepository.findSubscribedToUserIds(currentUser.getId());
-            
-            // Convert to DTO with subscription info
-            List<Map<String, Object>> userDTOs = users.stream()
-                .filter(user -> !user.getId().equals(currentUser.getId())) // Exclude current user
-                .map(user -> {
-                    Map<String, Object> dto = new HashMap<>();
-                    dto.put("id", user.getId());
-                    dto.put("username", user.getUsername());
-                    dto.put("email", user.getEmail());
-                    dto.put("role", user.getRole());
-                    dto.put("subscriberCount", subscriptionRepository.countBySubscribedTo(user));
-                    dto.put("isSubscribed", subscribedUserIds.contains(user.getId()));
-                    return dto;
-                })
-                .collect(Collectors.toList());
-
-            return ResponseEntity.ok(userDTOs);
-        } catch (Exception e) {
-            return ResponseEntity.status(500).body(Map.of("message", "Error fetching users: " + e.getMessage()));
+            pageCursor = PageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(Map.of("error", "Invalid cursor"));
+        }
+
+        // Fetch one extra row to know if there is a next page
+        int pageSize = PageCursor.pageSize(limit);
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        List<User> users = pageCursor == null
+                ? userRepository.findDirectory(currentUser.getId(), pageRequest)
+                : userRepository.findDirectoryBefore(currentUser.getId(), pageCursor.getCreatedAt(), pageCursor.getId(), pageRequest);
+
+        String nextCursor = null;
+        if (users.size() > pageSize) {
+            users = users.subList(0, pageSize);
+            User last = users.get(pageSize - 1);
+            nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("users", toDTOs(users, currentUser));
+        response.put("nextCursor", nextCursor);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Search users by username: prefix matches first, then similar usernames
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchUsers(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @AuthenticationPrincipal User currentUser) {
+        if (currentUser == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "User not authenticated"));
+        }
+        if (query.isBlank() || query.length() > 100) {
+            return ResponseEntity.status(400).body(Map.of("message", "Search query must be 1 to 100 characters"));
+        }
+
+        List<User> users = userSearchService.search(query, currentUser, UserSearchService.limit(limit));
+        return ResponseEntity.ok(toDTOs(users, currentUser));
+    }
+
+    // Subscriber counts come from the counters on User, the viewer's subscriptions from FollowGraph
+    private List<Map<String, Object>> toDTOs(List<User> users, User viewer) {
+        if (users.isEmpty()) {
+            return List.of();
+        }
+        List<Map<String, Object>> userDTOs = new ArrayList<>(users.size());
+        for (User user : users) {
+            Map<String, Object> dto = new HashMap<>();
+            dto.put("id", user.getId());
+            dto.put("username", user.getUsername());
+            dto.put("email", user.getEmail());
+            dto.put("role", user.getRole());
+            dto.put("subscriberCount", user.getFollowerCount());
+            dto.put("isSubscribed", followGraph.isFollowing(viewer.getId(), user.getId()));
+            userDTOs.add(dto);
         }
+        return userDTOs;
     }
 }
@@ -0,0 +1,19 @@
+package com._blog._blog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only view of a comment with its author's username, selected in one
+ * query instead of loading the Comment and its User separately.
+ */
+@Getter
+@AllArgsConstructor
+public class CommentView {
+    private Long id;
+    private String content;
+    private String username;
+    private LocalDateTime createdAt;
+}
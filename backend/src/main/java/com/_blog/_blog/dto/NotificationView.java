@@ -0,0 +1,23 @@
+package com._blog._blog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only view of a notification with its actor's username and its post's title, selected in
+ * one query instead of loading the Notification, then its actor and post separately.
+ */
+@Getter
+@AllArgsConstructor
+public class NotificationView {
+    private Long id;
+    private String type;
+    private String message;
+    private Boolean read;
+    private LocalDateTime createdAt;
+    private String actorUsername;
+    private Long postId;
+    private String postTitle;
+}
@@ -0,0 +1,46 @@
+package com._blog._blog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor for ranked search results, pointing at the last row of a page
+ * by its (rank, createdAt, id) triple. The rank is kept exactly as PostgreSQL returned it.
+ */
+@Getter
+@AllArgsConstructor
+public class SearchCursor {
+    private float rank;
+    private LocalDateTime createdAt;
+    private Long id;
+
+    public String encode() {
+        String raw = rank + "|" + createdAt.toString() + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Decode a cursor received from a client, null/blank means "first page"
+    public static SearchCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new SearchCursor(
+                Float.parseFloat(parts[0]),
+                LocalDateTime.parse(parts[1]),
+                Long.valueOf(parts[2])
+            );
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -7,7 +7,10 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "comments")
+@Table(name = "comments", indexes = {
+    @Index(name = "idx_comments_post_created", columnList = "post_id, created_at DESC, id DESC"),
+    @Index(name = "idx_comments_user", columnList = "user_id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,62 @@
+package com._blog._blog.entity;
+
+import com._blog._blog.service.PostPublishedEvent;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * NEW_POST notification fan-out still to be written for a post. Saved in the transaction that
+ * publishes the post and deleted once every subscriber has been notified; last_subscriber_id is
+ * advanced with each committed batch, so an interrupted fan-out resumes where it stopped.
+ */
+@Entity
+@Table(name = "fanout_jobs", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_fanout_jobs_post", columnNames = "post_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class FanoutJob {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "post_id", nullable = false)
+    private Long postId; // Plain id: the job is dropped when the post is gone
+    
+    @Column(name = "author_id", nullable = false)
+    private Long authorId;
+    
+    @Column(name = "author_username", nullable = false)
+    private String authorUsername;
+    
+    @Column(nullable = false, length = 200)
+    private String title;
+    
+    @Column(name = "post_created_at", nullable = false)
+    private LocalDateTime postCreatedAt;
+    
+    @Column(name = "last_subscriber_id", nullable = false)
+    private long lastSubscriberId = 0;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
+    // Custom constructor
+    public FanoutJob(PostPublishedEvent event) {
+        this.postId = event.getPostId();
+        this.authorId = event.getAuthorId();
+        this.authorUsername = event.getAuthorUsername();
+        this.title = event.getTitle();
+        this.postCreatedAt = event.getCreatedAt();
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    public PostPublishedEvent toEvent() {
+        return new PostPublishedEvent(postId, authorId, authorUsername, title, postCreatedAt);
+    }
+}
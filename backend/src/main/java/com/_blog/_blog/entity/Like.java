@@ -8,6 +8,8 @@ import lombok.NoArgsConstructor;
 @Entity
 @Table(name = "likes", uniqueConstraints = {
     @UniqueConstraint(columnNames = {"post_id", "user_id"})
+}, indexes = {
+    @Index(name = "idx_likes_user", columnList = "user_id")
 })
 @Getter
 @Setter
@@ -0,0 +1,38 @@
+package com._blog._blog.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * One stored media file, keyed by the SHA-256 of its content. Posts with identical uploads share
+ * the file; refCount counts the posts that use it and the file is deleted when it drops to zero.
+ * Rows are only written by MediaStore.
+ */
+@Entity
+@Table(name = "media_objects", indexes = {
+    @Index(name = "idx_media_objects_path", columnList = "path", unique = true)
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class MediaObject {
+
+    @Id
+    @Column(length = 64)
+    private String hash; // Hex SHA-256 of the content
+
+    @Column(nullable = false)
+    private String path; // Relative to the upload directory, e.g. ab/cd/<hash>.png
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "ref_count", nullable = false)
+    private long refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -7,7 +7,12 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notifications")
+@Table(name = "notifications", indexes = {
+    @Index(name = "idx_notifications_user", columnList = "user_id"),
+    @Index(name = "idx_notifications_user_created", columnList = "user_id, created_at DESC, id DESC"),
+    @Index(name = "idx_notifications_actor", columnList = "actor_id"),
+    @Index(name = "idx_notifications_post", columnList = "post_id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -5,11 +5,17 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "posts")
+@Table(name = "posts", indexes = {
+    @Index(name = "idx_posts_feed", columnList = "is_hidden, created_at DESC, id DESC"),
+    @Index(name = "idx_posts_author_created", columnList = "user_id, created_at DESC, id DESC"),
+    @Index(name = "idx_posts_deleted_at", columnList = "deleted_at"),
+    @Index(name = "idx_posts_media_url", columnList = "media_url")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -32,12 +38,31 @@ public class Post {
     @Column(name = "media_url")
     private String mediaUrl;
     
+    // Downscaled copies of an image, "width=url" pairs separated by ";" (see ImageVariantService).
+    // Only written through SQL, so saving a stale entity cannot drop variants generated meanwhile
+    @Column(name = "media_variants", length = 2000, updatable = false)
+    private String mediaVariants;
+    
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
     
     @Column(name = "is_hidden", nullable = false)
     private boolean isHidden = false;
     
+    // Tombstone set when the post is deleted; the row is removed later by PostSweeper.
+    // Only set through PostRepository.markDeleted, so saving a stale entity cannot undelete it
+    @Column(name = "deleted_at", updatable = false)
+    private LocalDateTime deletedAt;
+    
+    // Denormalized counters, only ever changed through atomic UPDATE statements
+    @ColumnDefault("0")
+    @Column(name = "like_count", nullable = false, updatable = false)
+    private long likeCount = 0;
+    
+    @ColumnDefault("0")
+    @Column(name = "comment_count", nullable = false, updatable = false)
+    private long commentCount = 0;
+    
     // One-to-many relationships
     @JsonIgnore
     @OneToMany(mappedBy = "post", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
@@ -0,0 +1,60 @@
+package com._blog._blog.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Background deletion of a user and all of their data. The job row records progress so an
+ * admin can follow it, and so unfinished jobs can be picked up again after a restart.
+ */
+@Entity
+@Table(name = "purge_jobs", indexes = {
+    @Index(name = "idx_purge_jobs_status", columnList = "status")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class PurgeJob {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId; // Plain id: the user row is deleted by the job itself
+    
+    @Column(nullable = false)
+    private String username;
+    
+    @Column(nullable = false)
+    private String status = "PENDING"; // PENDING, RUNNING, DONE, FAILED
+    
+    @Column
+    private String phase; // Table currently being purged
+    
+    @Column(name = "rows_deleted", nullable = false)
+    private long rowsDeleted = 0;
+    
+    @Column(length = 1000)
+    private String error;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt = LocalDateTime.now();
+    
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+    
+    // Custom constructor
+    public PurgeJob(User user) {
+        this.userId = user.getId();
+        this.username = user.getUsername();
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+}
@@ -4,10 +4,13 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "subscriptions", uniqueConstraints = {
     @UniqueConstraint(columnNames = {"subscriber_id", "subscribed_to_id"})
+}, indexes = {
+    @Index(name = "idx_subscriptions_subscribed_to", columnList = "subscribed_to_id, subscriber_id")
 })
 @Getter
 @Setter
@@ -26,9 +29,14 @@ public class Subscription {
     @JoinColumn(name = "subscribed_to_id", nullable = false)
     private User subscribedTo;
     
+    // Nullable for subscriptions created before this column existed
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
     // Custom constructor
     public Subscription(User subscriber, User subscribedTo) {
         this.subscriber = subscriber;
         this.subscribedTo = subscribedTo;
+        this.createdAt = LocalDateTime.now();
     }
 }
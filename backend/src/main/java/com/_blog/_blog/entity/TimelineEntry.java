@@ -0,0 +1,43 @@
+package com._blog._blog.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * One row of a user's materialized home timeline: a post from an author the owner follows.
+ * Rows are written when posts are created (fan-out on write) and pruned when the
+ * subscription, visibility or the post itself goes away.
+ */
+@Entity
+@Table(name = "timeline_entries", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_timeline_owner_post", columnNames = {"owner_id", "post_id"})
+}, indexes = {
+    @Index(name = "idx_timeline_owner_created", columnList = "owner_id, created_at DESC, post_id DESC"),
+    @Index(name = "idx_timeline_owner_author", columnList = "owner_id, author_id"),
+    @Index(name = "idx_timeline_post", columnList = "post_id"),
+    @Index(name = "idx_timeline_author", columnList = "author_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class TimelineEntry {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId; // User whose timeline this row belongs to
+    
+    @Column(name = "post_id", nullable = false)
+    private Long postId;
+    
+    @Column(name = "author_id", nullable = false)
+    private Long authorId;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt; // Copy of the post's createdAt, used for ordering
+}
@@ -0,0 +1,76 @@
+package com._blog._blog.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * A resumable upload: the client sends the file in fixed-size chunks at any offset, then
+ * completes it with the file's SHA-256. A completed upload is attached to a post by passing
+ * its id as uploadId to createPost/updatePost. See UploadService.
+ */
+@Entity
+@Table(name = "upload_sessions", indexes = {
+    @Index(name = "idx_upload_sessions_updated_at", columnList = "updated_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    private String id; // Random UUID, also the name of the partial file
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private String filename;
+
+    @Column(name = "total_size", nullable = false)
+    private long totalSize;
+
+    @Column(name = "chunk_size", nullable = false)
+    private int chunkSize;
+
+    @Column(name = "chunk_count", nullable = false)
+    private int chunkCount;
+
+    // One bit per chunk, set through SQL as chunks arrive
+    @Column(name = "received_chunks", nullable = false, updatable = false)
+    private byte[] receivedChunks;
+
+    @Column(name = "received_count", nullable = false, updatable = false)
+    private int receivedCount = 0;
+
+    @Column(nullable = false)
+    private String status = "OPEN"; // OPEN, VERIFYING (checksum being computed), COMPLETE
+
+    @Column(length = 64)
+    private String sha256; // Verified checksum, set on completion
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    // Custom constructor
+    public UploadSession(String id, User user, String filename, long totalSize, int chunkSize) {
+        this.id = id;
+        this.userId = user.getId();
+        this.filename = filename;
+        this.totalSize = totalSize;
+        this.chunkSize = chunkSize;
+        this.chunkCount = (int) ((totalSize + chunkSize - 1) / chunkSize);
+        this.receivedChunks = new byte[(chunkCount + 7) / 8];
+    }
+
+    public boolean isReceived(int chunk) {
+        // Postgres set_bit numbers bits from the least significant bit of each byte
+        return (receivedChunks[chunk / 8] & (1 << (chunk % 8))) != 0;
+    }
+}
@@ -5,6 +5,8 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.SQLRestriction;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -14,7 +16,9 @@ import java.util.Collections;
 import java.util.List;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+    @Index(name = "idx_users_created", columnList = "created_at DESC, id DESC")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -43,9 +47,41 @@ public class User implements UserDetails {
     @Column(name = "is_banned", nullable = false)
     private boolean banned = false;
     
+    // Set while a purge job is deleting this user's data; the account can no longer log in
+    @ColumnDefault("false")
+    @Column(name = "is_deleting", nullable = false)
+    private boolean deleting = false;
+    
+    // Denormalized subscription counters, only ever changed through atomic UPDATE statements
+    @ColumnDefault("0")
+    @Column(name = "follower_count", nullable = false, updatable = false)
+    private long followerCount = 0;
+    
+    @ColumnDefault("0")
+    @Column(name = "following_count", nullable = false, updatable = false)
+    private long followingCount = 0;
+    
+    // Posts of celebrity authors are pulled at read time instead of pushed (see CelebrityRegistry);
+    // persisted so an author dropping below the threshold while the app is down still gets backfilled
+    @JsonIgnore
+    @ColumnDefault("false")
+    @Column(name = "is_celebrity", nullable = false, updatable = false)
+    private boolean celebrity = false;
+    
+    // Unread stored notifications, kept in step by every write to notifications (see UnreadNotificationCounter)
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(name = "unread_notification_count", nullable = false, updatable = false)
+    private long unreadNotificationCount = 0;
+    
+    // Everything created before this instant counts as read (lazy NEW_POST notifications)
+    @Column(name = "notifications_seen_at")
+    private LocalDateTime notificationsSeenAt;
+    
     // One-to-many relationships
     @JsonIgnore
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @SQLRestriction("deleted_at IS NULL")
     private List<Post> posts;
     
     @JsonIgnore
@@ -99,7 +135,7 @@ public class User implements UserDetails {
     
     @Override
     public boolean isEnabled() {
-        return !banned; // User is disabled if banned
+        return !banned && !deleting; // User is disabled if banned or being deleted
     }
 }
 
@@ -1,24 +1,40 @@
 package com._blog._blog.repository;
 
+import com._blog._blog.dto.CommentView;
 import com._blog._blog.entity.Comment;
 import com._blog._blog.entity.Post;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
     
-    // Find all comments for a specific post, ordered by creation date
-    List<Comment> findByPostOrderByCreatedAtDesc(Post post);
+    // First page of a post's comments with author usernames, newest first
+    @Query("SELECT new com._blog._blog.dto.CommentView(c.id, c.content, u.username, c.createdAt) " +
+           "FROM Comment c JOIN c.user u WHERE c.post.id = :postId " +
+           "ORDER BY c.createdAt DESC, c.id DESC")
+    List<CommentView> findPage(@Param("postId") Long postId, Pageable pageable);
+    
+    // Next page of a post's comments, strictly after the (createdAt, id) cursor
+    @Query("SELECT new com._blog._blog.dto.CommentView(c.id, c.content, u.username, c.createdAt) " +
+           "FROM Comment c JOIN c.user u WHERE c.post.id = :postId " +
+           "AND (c.createdAt < :createdAt OR (c.createdAt = :createdAt AND c.id < :id)) " +
+           "ORDER BY c.createdAt DESC, c.id DESC")
+    List<CommentView> findPageBefore(@Param("postId") Long postId, @Param("createdAt") LocalDateTime createdAt,
+                                     @Param("id") Long id, Pageable pageable);
     
     // Count comments for a post
     long countByPost(Post post);
     
-    // Delete all comments for a post
-    void deleteByPost(Post post);
-    
-    // Delete all comments by a user (for cascade delete)
-    void deleteByUser(com._blog._blog.entity.User user);
+    // Delete all comments for a post in one statement
+    @Modifying
+    @Query("DELETE FROM Comment c WHERE c.post.id = :postId")
+    int deleteAllByPostId(@Param("postId") Long postId);
 }
@@ -0,0 +1,15 @@
+package com._blog._blog.repository;
+
+import com._blog._blog.entity.FanoutJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface FanoutJobRepository extends JpaRepository<FanoutJob, Long> {
+    
+    // Oldest unfinished fan-outs first (used to resume them after a restart or a full queue)
+    List<FanoutJob> findAllByOrderByIdAsc(Pageable pageable);
+}
@@ -4,8 +4,13 @@ import com._blog._blog.entity.Like;
 import com._blog._blog.entity.Post;
 import com._blog._blog.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -23,9 +28,27 @@ public interface LikeRepository extends JpaRepository<Like, Long> {
     // Delete a like by post and user
     void deleteByPostAndUser(Post post, User user);
     
-    // Delete all likes for a post
-    void deleteByPost(Post post);
+    // Insert the like unless it already exists, in one round trip. Posts of an author being
+    // purged count as missing, a new like would block the purge.
+    // Returns one row: {number of rows inserted (0 or 1), stored like_count of the post}
+    @Transactional
+    @Query(value = "WITH target AS (SELECT p.id, p.like_count FROM posts p JOIN users u ON u.id = p.user_id " +
+                   "WHERE p.id = :postId AND p.deleted_at IS NULL AND NOT u.is_deleting), " +
+                   "ins AS (INSERT INTO likes (post_id, user_id) SELECT id, :userId FROM target " +
+                   "ON CONFLICT (post_id, user_id) DO NOTHING RETURNING id) " +
+                   "SELECT (SELECT COUNT(*) FROM ins), like_count FROM target", nativeQuery = true)
+    List<Object[]> insertIfAbsent(@Param("postId") Long postId, @Param("userId") Long userId);
     
-    // Delete all likes by a user (for cascade delete)
-    void deleteByUser(User user);
+    // Delete the like if it exists, in one round trip.
+    // Returns one row: {number of rows deleted (0 or 1), stored like_count of the post}
+    @Transactional
+    @Query(value = "WITH del AS (DELETE FROM likes WHERE post_id = :postId AND user_id = :userId RETURNING id) " +
+                   "SELECT (SELECT COUNT(*) FROM del), p.like_count FROM posts p " +
+                   "WHERE p.id = :postId AND p.deleted_at IS NULL", nativeQuery = true)
+    List<Object[]> deleteIfPresent(@Param("postId") Long postId, @Param("userId") Long userId);
+    
+    // Delete all likes for a post in one statement
+    @Modifying
+    @Query("DELETE FROM Like l WHERE l.post.id = :postId")
+    int deleteAllByPostId(@Param("postId") Long postId);
 }
@@ -1,35 +1,85 @@
 package com._blog._blog.repository;
 
+import com._blog._blog.dto.NotificationView;
 import com._blog._blog.entity.Notification;
 import com._blog._blog.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
     
-    // Get unread notifications for a user
-    List<Notification> findByUserAndIsReadFalseOrderByCreatedAtDesc(User user);
+    // Get unread notifications for a user, skipping those about deleted posts
+    @Query("SELECT new com._blog._blog.dto.NotificationView(n.id, n.notificationType, n.message, n.isRead, n.createdAt, " +
+           "a.username, p.id, p.title) FROM Notification n LEFT JOIN n.actor a LEFT JOIN n.post p " +
+           "WHERE n.user.id = :userId AND n.isRead = false AND (p IS NULL OR p.deletedAt IS NULL) " +
+           "ORDER BY n.createdAt DESC")
+    List<NotificationView> findUnread(@Param("userId") Long userId);
     
-    // Mark notification as read
+    // Get unread notifications created after the user's watermark
+    @Query("SELECT new com._blog._blog.dto.NotificationView(n.id, n.notificationType, n.message, n.isRead, n.createdAt, " +
+           "a.username, p.id, p.title) FROM Notification n LEFT JOIN n.actor a LEFT JOIN n.post p " +
+           "WHERE n.user.id = :userId AND n.isRead = false AND n.createdAt > :since " +
+           "AND (p IS NULL OR p.deletedAt IS NULL) ORDER BY n.createdAt DESC")
+    List<NotificationView> findUnreadSince(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+    
+    // First page of a user's notification history, read or not (keyset pagination on createdAt, id)
+    @Query("SELECT new com._blog._blog.dto.NotificationView(n.id, n.notificationType, n.message, n.isRead, n.createdAt, " +
+           "a.username, p.id, p.title) FROM Notification n LEFT JOIN n.actor a LEFT JOIN n.post p " +
+           "WHERE n.user.id = :userId AND (p IS NULL OR p.deletedAt IS NULL) " +
+           "ORDER BY n.createdAt DESC, n.id DESC")
+    List<NotificationView> findPage(@Param("userId") Long userId, Pageable pageable);
+    
+    // Next page of the history, strictly after the (createdAt, id) cursor
+    @Query("SELECT new com._blog._blog.dto.NotificationView(n.id, n.notificationType, n.message, n.isRead, n.createdAt, " +
+           "a.username, p.id, p.title) FROM Notification n LEFT JOIN n.actor a LEFT JOIN n.post p " +
+           "WHERE n.user.id = :userId AND (p IS NULL OR p.deletedAt IS NULL) " +
+           "AND (n.createdAt < :createdAt OR (n.createdAt = :createdAt AND n.id < :id)) " +
+           "ORDER BY n.createdAt DESC, n.id DESC")
+    List<NotificationView> findPageBefore(@Param("userId") Long userId, @Param("createdAt") LocalDateTime createdAt,
+                                          @Param("id") Long id, Pageable pageable);
+    
+    // Check for an existing notification about a post (used for lazy NEW_POST read markers)
+    boolean existsByUserAndPostAndNotificationType(User user, com._blog._blog.entity.Post post, String notificationType);
+    
+    // Mark notification as read; returns 0 if it was already read (or is not the user's)
     @Modifying
-    @Query("UPDATE Notification n SET n.isRead = true WHERE n.id = :notificationId AND n.user.id = :userId")
-    void markAsRead(@Param("notificationId") Long notificationId, @Param("userId") Long userId);
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.id = :notificationId AND n.user.id = :userId AND n.isRead = false")
+    int markAsRead(@Param("notificationId") Long notificationId, @Param("userId") Long userId);
     
-    // Mark all notifications as read for a user
+    // Mark all notifications as read for a user; returns how many were unread
     @Modifying
     @Query("UPDATE Notification n SET n.isRead = true WHERE n.user.id = :userId AND n.isRead = false")
-    void markAllAsRead(@Param("userId") Long userId);
+    int markAllAsRead(@Param("userId") Long userId);
     
-    // Delete all notifications for a post
-    void deleteByPost(com._blog._blog.entity.Post post);
+    // Mark all notifications for a post as read in one statement, taking them off their recipients'
+    // unread counters; returns the ids of the users whose counter changed. Used when the post is
+    // tombstoned, since from then on no read shows its notifications.
+    // @Transactional rather than @Modifying, which could not return the RETURNING rows
+    @Transactional
+    @Query(value = "WITH upd AS (UPDATE notifications SET is_read = true WHERE post_id = :postId AND NOT is_read RETURNING user_id), " +
+                   "counts AS (UPDATE users u SET unread_notification_count = u.unread_notification_count - d.cnt " +
+                   "FROM (SELECT user_id, COUNT(*) AS cnt FROM upd GROUP BY user_id) d " +
+                   "WHERE u.id = d.user_id RETURNING u.id) " +
+                   "SELECT id FROM counts", nativeQuery = true)
+    List<Long> markAllAsReadByPostId(@Param("postId") Long postId);
     
-    // Delete all notifications for/from a user (for cascade delete)
-    void deleteByUser(User user);
-    void deleteByActor(User actor);
+    // Delete all notifications for a post in one statement, taking the unread ones off their
+    // recipients' unread counters; returns the ids of the users whose counter changed.
+    // @Transactional rather than @Modifying, which could not return the RETURNING rows
+    @Transactional
+    @Query(value = "WITH del AS (DELETE FROM notifications WHERE post_id = :postId RETURNING user_id, is_read), " +
+                   "counts AS (UPDATE users u SET unread_notification_count = u.unread_notification_count - d.cnt " +
+                   "FROM (SELECT user_id, COUNT(*) AS cnt FROM del WHERE NOT is_read GROUP BY user_id) d " +
+                   "WHERE u.id = d.user_id RETURNING u.id) " +
+                   "SELECT id FROM counts", nativeQuery = true)
+    List<Long> deleteAllByPostId(@Param("postId") Long postId);
 }
@@ -2,35 +2,148 @@ package com._blog._blog.repository;
 
 import com._blog._blog.entity.Post;
 import com._blog._blog.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
+    // Find a post unless it has been deleted (tombstoned posts wait for the sweeper)
+    @Query("SELECT p FROM Post p WHERE p.id = :id AND p.deletedAt IS NULL")
+    Optional<Post> findActiveById(@Param("id") Long id);
+    
+    boolean existsByIdAndDeletedAtIsNull(Long id);
+    
     // Find user's posts
-    List<Post> findByUserOrderByCreatedAtDesc(User user);
+    List<Post> findByUserAndDeletedAtIsNullOrderByCreatedAtDesc(User user);
     
     // Find user's posts (excluding hidden for non-admins)
-    List<Post> findByUserAndIsHiddenFalseOrderByCreatedAtDesc(User user);
+    List<Post> findByUserAndIsHiddenFalseAndDeletedAtIsNullOrderByCreatedAtDesc(User user);
     
     // Find all posts
-    List<Post> findAllByOrderByCreatedAtDesc();
+    List<Post> findByDeletedAtIsNullOrderByCreatedAtDesc();
     
     // Find all visible posts (excluding hidden)
-    List<Post> findByIsHiddenFalseOrderByCreatedAtDesc();
+    List<Post> findByIsHiddenFalseAndDeletedAtIsNullOrderByCreatedAtDesc();
+    
+    // First page of the visible feed (keyset pagination on createdAt, id)
+    @Query("SELECT p FROM Post p JOIN FETCH p.user WHERE p.isHidden = false AND p.deletedAt IS NULL ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findVisibleFeed(Pageable pageable);
+    
+    // Next page of the visible feed, strictly after the (createdAt, id) cursor
+    @Query("SELECT p FROM Post p JOIN FETCH p.user WHERE p.isHidden = false AND p.deletedAt IS NULL " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findVisibleFeedBefore(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+    
+    // Load a page of posts picked by id elsewhere (e.g. search), with their authors
+    @Query("SELECT p FROM Post p JOIN FETCH p.user WHERE p.id IN :ids")
+    List<Post> findAllWithUserByIdIn(@Param("ids") List<Long> ids);
+    
+    // Most recent visible posts of one author (pull side of the hybrid home feed)
+    @Query("SELECT p FROM Post p JOIN FETCH p.user WHERE p.user.id = :userId AND p.isHidden = false AND p.deletedAt IS NULL " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findRecentByAuthor(@Param("userId") Long userId, Pageable pageable);
+    
+    // Visible posts of one author strictly after the (createdAt, id) cursor
+    @Query("SELECT p FROM Post p JOIN FETCH p.user WHERE p.user.id = :userId AND p.isHidden = false AND p.deletedAt IS NULL " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findRecentByAuthorBefore(@Param("userId") Long userId, @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("id") Long id, Pageable pageable);
+    
+    // New visible posts from followed authors since the watermark (and since each subscription started)
+    // that the user has no stored notification for yet; these are the lazy NEW_POST notifications
+    @Query("SELECT p FROM Post p JOIN FETCH p.user " +
+           "JOIN Subscription s ON s.subscribedTo.id = p.user.id AND s.subscriber.id = :userId " +
+           "WHERE p.isHidden = false AND p.deletedAt IS NULL AND p.createdAt > :since " +
+           "AND (s.createdAt IS NULL OR p.createdAt > s.createdAt) " +
+           "AND NOT EXISTS (SELECT n.id FROM Notification n WHERE n.user.id = :userId AND n.post = p " +
+           "                AND n.notificationType = 'NEW_POST') " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findUnseenFromSubscriptions(@Param("userId") Long userId, @Param("since") LocalDateTime since, Pageable pageable);
+    
+    // Number of posts findUnseenFromSubscriptions would return, counting no further than :limit
+    @Query(value = "SELECT COUNT(*) FROM (SELECT 1 FROM posts p " +
+                   "JOIN subscriptions s ON s.subscribed_to_id = p.user_id AND s.subscriber_id = :userId " +
+                   "WHERE p.is_hidden = false AND p.deleted_at IS NULL AND p.created_at > :since " +
+                   "AND (s.created_at IS NULL OR p.created_at > s.created_at) " +
+                   "AND NOT EXISTS (SELECT 1 FROM notifications n WHERE n.user_id = :userId AND n.post_id = p.id " +
+                   "                AND n.notification_type = 'NEW_POST') " +
+                   "LIMIT :limit) unseen", nativeQuery = true)
+    long countUnseenFromSubscriptions(@Param("userId") Long userId, @Param("since") LocalDateTime since, @Param("limit") int limit);
     
     // Find posts by users that the current user is subscribed to
-    @Query("SELECT p FROM Post p WHERE p.user.id IN :userIds ORDER BY p.createdAt DESC")
+    @Query("SELECT p FROM Post p WHERE p.user.id IN :userIds AND p.deletedAt IS NULL ORDER BY p.createdAt DESC")
     List<Post> findByUserIdInOrderByCreatedAtDesc(@Param("userIds") List<Long> userIds);
     
     // Find visible posts by users that the current user is subscribed to
-    @Query("SELECT p FROM Post p WHERE p.user.id IN :userIds AND p.isHidden = false ORDER BY p.createdAt DESC")
+    @Query("SELECT p FROM Post p JOIN FETCH p.user WHERE p.user.id IN :userIds AND p.isHidden = false AND p.deletedAt IS NULL ORDER BY p.createdAt DESC")
     List<Post> findByUserIdInAndIsHiddenFalseOrderByCreatedAtDesc(@Param("userIds") List<Long> userIds);
     
-    // Delete all posts by a user (for cascade delete)
-    void deleteByUser(User user);
+    // Atomically adjust the like counter and return the new value. Not @Modifying: that would run
+    // it through executeUpdate, which cannot return the RETURNING value; a transaction is still required
+    @Transactional
+    @Query(value = "UPDATE posts SET like_count = like_count + :delta WHERE id = :postId RETURNING like_count", nativeQuery = true)
+    Long adjustLikeCount(@Param("postId") Long postId, @Param("delta") long delta);
+    
+    // Atomically adjust the comment counter and return the new value (see adjustLikeCount)
+    @Transactional
+    @Query(value = "UPDATE posts SET comment_count = comment_count + :delta WHERE id = :postId RETURNING comment_count", nativeQuery = true)
+    Long adjustCommentCount(@Param("postId") Long postId, @Param("delta") long delta);
+    
+    // Highest post id, used to walk the table in id ranges
+    @Query("SELECT COALESCE(MAX(p.id), 0) FROM Post p")
+    Long findMaxId();
+    
+    // Tombstone the post; PostSweeper removes the row and its children later
+    @Modifying
+    @Query("UPDATE Post p SET p.deletedAt = :now WHERE p.id = :postId AND p.deletedAt IS NULL")
+    int markDeleted(@Param("postId") Long postId, @Param("now") LocalDateTime now);
+
+    // Variants belong to the old media once a post's media is removed or replaced. Clears the
+    // column and returns what it held, read under the row lock, so variants recorded by a worker
+    // after the post was loaded are released too (see adjustLikeCount for why not @Modifying)
+    @Transactional
+    @Query(value = "WITH old AS (SELECT id, media_variants FROM posts WHERE id = :postId FOR UPDATE) " +
+                   "UPDATE posts p SET media_variants = NULL FROM old WHERE p.id = old.id " +
+                   "RETURNING old.media_variants", nativeQuery = true)
+    String clearMediaVariants(@Param("postId") Long postId);
+
+    // Oldest tombstones first, for the sweeper
+    @Query("SELECT p.id, p.mediaUrl, p.mediaVariants FROM Post p WHERE p.deletedAt IS NOT NULL AND p.deletedAt < :before ORDER BY p.deletedAt ASC")
+    List<Object[]> findTombstones(@Param("before") LocalDateTime before, Pageable pageable);
+
+    long countByDeletedAtIsNotNull();
+
+    // Delete the post row itself, once its likes, comments, notifications and reports are gone
+    @Modifying
+    @Query("DELETE FROM Post p WHERE p.id = :postId")
+    int hardDeleteById(@Param("postId") Long postId);
+    
+    // Lock the posts in [fromId, toId), so counter adjustments wait for the recount that follows
+    // in the same transaction, and the recount sees every adjustment committed before it
+    @Query(value = "SELECT COUNT(*) FROM (SELECT id FROM posts WHERE id >= :fromId AND id < :toId ORDER BY id FOR UPDATE) locked",
+           nativeQuery = true)
+    long lockRange(@Param("fromId") long fromId, @Param("toId") long toId);
+    
+    // Recount likes/comments for posts in [fromId, toId) and repair any drifted counter;
+    // call after lockRange in the same transaction, or a concurrent adjustment can be overwritten
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE posts p SET like_count = COALESCE(l.cnt, 0), comment_count = COALESCE(c.cnt, 0) " +
+                   "FROM posts p2 " +
+                   "LEFT JOIN (SELECT post_id, COUNT(*) AS cnt FROM likes WHERE post_id >= :fromId AND post_id < :toId GROUP BY post_id) l ON l.post_id = p2.id " +
+                   "LEFT JOIN (SELECT post_id, COUNT(*) AS cnt FROM comments WHERE post_id >= :fromId AND post_id < :toId GROUP BY post_id) c ON c.post_id = p2.id " +
+                   "WHERE p.id = p2.id AND p2.id >= :fromId AND p2.id < :toId " +
+                   "AND (p.like_count <> COALESCE(l.cnt, 0) OR p.comment_count <> COALESCE(c.cnt, 0))", nativeQuery = true)
+    int reconcileCounters(@Param("fromId") long fromId, @Param("toId") long toId);
 }
@@ -0,0 +1,19 @@
+package com._blog._blog.repository;
+
+import com._blog._blog.entity.PurgeJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PurgeJobRepository extends JpaRepository<PurgeJob, Long> {
+    
+    // Jobs that still have work to do (used to resume them after a restart)
+    List<PurgeJob> findByStatusInOrderByIdAsc(Collection<String> statuses);
+    
+    // Unfinished job for a user, so a repeated delete request reuses it
+    Optional<PurgeJob> findFirstByUserIdAndStatusIn(Long userId, Collection<String> statuses);
+}
@@ -4,6 +4,9 @@ import com._blog._blog.entity.Report;
 import com._blog._blog.entity.User;
 import com._blog._blog.entity.Post;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -29,10 +32,8 @@ public interface ReportRepository extends JpaRepository<Report, Long> {
     // Count pending reports
     long countByStatus(String status);
     
-    // Delete all reports for a post
-    void deleteByPost(Post post);
-    
-    // Delete all reports by/about a user (for cascade delete)
-    void deleteByReporter(User reporter);
-    void deleteByReportedUser(User reportedUser);
+    // Delete all reports for a post in one statement
+    @Modifying
+    @Query("DELETE FROM Report r WHERE r.post.id = :postId")
+    int deleteAllByPostId(@Param("postId") Long postId);
 }
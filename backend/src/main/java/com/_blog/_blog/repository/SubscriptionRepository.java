@@ -3,10 +3,12 @@ package com._blog._blog.repository;
 import com._blog._blog.entity.Subscription;
 import com._blog._blog.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,20 +27,16 @@ public interface SubscriptionRepository extends JpaRepository<Subscription, Long
     // Get all subscribers of a user
     List<Subscription> findBySubscribedTo(User subscribedTo);
     
-    // Count subscribers
-    long countBySubscribedTo(User subscribedTo);
-    
-    // Count subscriptions (following count)
-    long countBySubscriber(User subscriber);
-    
-    // Delete a subscription
-    void deleteBySubscriberAndSubscribedTo(User subscriber, User subscribedTo);
+    // Delete a subscription, returns the number of rows deleted (0 or 1)
+    @Modifying
+    @Query("DELETE FROM Subscription s WHERE s.subscriber = :subscriber AND s.subscribedTo = :subscribedTo")
+    int deleteBySubscriberAndSubscribedTo(@Param("subscriber") User subscriber, @Param("subscribedTo") User subscribedTo);
     
     // Get users IDs that the current user is subscribed to
     @Query("SELECT s.subscribedTo.id FROM Subscription s WHERE s.subscriber.id = :userId")
     List<Long> findSubscribedToUserIds(@Param("userId") Long userId);
     
-    // Delete all subscriptions by/to a user (for cascade delete)
-    void deleteBySubscriber(User subscriber);
-    void deleteBySubscribedTo(User subscribedTo);
+    // Which of the given users the subscriber follows
+    @Query("SELECT s.subscribedTo.id FROM Subscription s WHERE s.subscriber.id = :userId AND s.subscribedTo.id IN :candidateIds")
+    List<Long> findSubscribedToUserIdsAmong(@Param("userId") Long userId, @Param("candidateIds") Collection<Long> candidateIds);
 }
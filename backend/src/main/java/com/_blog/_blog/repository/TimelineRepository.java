@@ -0,0 +1,69 @@
+package com._blog._blog.repository;
+
+import com._blog._blog.entity.Post;
+import com._blog._blog.entity.TimelineEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TimelineRepository extends JpaRepository<TimelineEntry, Long> {
+    
+    // First page of a user's timeline
+    @Query("SELECT p FROM TimelineEntry t JOIN Post p ON p.id = t.postId JOIN FETCH p.user " +
+           "WHERE t.ownerId = :ownerId AND p.isHidden = false AND p.deletedAt IS NULL " +
+           "ORDER BY t.createdAt DESC, t.postId DESC")
+    List<Post> findTimeline(@Param("ownerId") Long ownerId, Pageable pageable);
+    
+    // Next page of a user's timeline, strictly after the (createdAt, postId) cursor
+    @Query("SELECT p FROM TimelineEntry t JOIN Post p ON p.id = t.postId JOIN FETCH p.user " +
+           "WHERE t.ownerId = :ownerId AND p.isHidden = false AND p.deletedAt IS NULL " +
+           "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.postId < :postId)) " +
+           "ORDER BY t.createdAt DESC, t.postId DESC")
+    List<Post> findTimelineBefore(@Param("ownerId") Long ownerId, @Param("createdAt") LocalDateTime createdAt,
+                                  @Param("postId") Long postId, Pageable pageable);
+    
+    // Push a post into the timeline of every subscriber of its author
+    @Modifying
+    @Query(value = "INSERT INTO timeline_entries (owner_id, post_id, author_id, created_at) " +
+                   "SELECT s.subscriber_id, :postId, :authorId, :createdAt FROM subscriptions s " +
+                   "WHERE s.subscribed_to_id = :authorId " +
+                   "ON CONFLICT (owner_id, post_id) DO NOTHING", nativeQuery = true)
+    int fanOutPost(@Param("postId") Long postId, @Param("authorId") Long authorId, @Param("createdAt") LocalDateTime createdAt);
+    
+    // Copy an author's most recent visible posts into one subscriber's timeline
+    @Modifying
+    @Query(value = "INSERT INTO timeline_entries (owner_id, post_id, author_id, created_at) " +
+                   "SELECT :ownerId, p.id, p.user_id, p.created_at FROM posts p " +
+                   "WHERE p.user_id = :authorId AND p.is_hidden = false AND p.deleted_at IS NULL " +
+                   "ORDER BY p.created_at DESC, p.id DESC LIMIT :limit " +
+                   "ON CONFLICT (owner_id, post_id) DO NOTHING", nativeQuery = true)
+    int backfillFromAuthor(@Param("ownerId") Long ownerId, @Param("authorId") Long authorId, @Param("limit") int limit);
+    
+    // Copy an author's most recent visible posts into the timeline of every subscriber
+    @Modifying
+    @Query(value = "INSERT INTO timeline_entries (owner_id, post_id, author_id, created_at) " +
+                   "SELECT s.subscriber_id, p.id, p.user_id, p.created_at FROM subscriptions s " +
+                   "CROSS JOIN (SELECT id, user_id, created_at FROM posts " +
+                   "            WHERE user_id = :authorId AND is_hidden = false AND deleted_at IS NULL " +
+                   "            ORDER BY created_at DESC, id DESC LIMIT :limit) p " +
+                   "WHERE s.subscribed_to_id = :authorId " +
+                   "ON CONFLICT (owner_id, post_id) DO NOTHING", nativeQuery = true)
+    int backfillAllSubscribers(@Param("authorId") Long authorId, @Param("limit") int limit);
+    
+    // Remove an author's posts from one subscriber's timeline (unsubscribe)
+    @Modifying
+    @Query("DELETE FROM TimelineEntry t WHERE t.ownerId = :ownerId AND t.authorId = :authorId")
+    int deleteByOwnerAndAuthor(@Param("ownerId") Long ownerId, @Param("authorId") Long authorId);
+    
+    // Remove a post from every timeline (hide/delete)
+    @Modifying
+    @Query("DELETE FROM TimelineEntry t WHERE t.postId = :postId")
+    int deleteByPostId(@Param("postId") Long postId);
+}
@@ -0,0 +1,47 @@
+package com._blog._blog.repository;
+
+import com._blog._blog.entity.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    // Mark a chunk as received, counting it once even if it is sent again.
+    // Clears the persistence context so the session is read again with the new bits.
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE upload_sessions SET " +
+                   "received_count = received_count + 1 - get_bit(received_chunks, :chunk), " +
+                   "received_chunks = set_bit(received_chunks, :chunk, 1), updated_at = :now " +
+                   "WHERE id = :id AND status = 'OPEN'", nativeQuery = true)
+    int markChunkReceived(@Param("id") String id, @Param("chunk") int chunk, @Param("now") LocalDateTime now);
+
+    // Move a session from one status to another; returns 0 if it was not in the expected status
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE UploadSession s SET s.status = :to, s.updatedAt = :now WHERE s.id = :id AND s.status = :from")
+    int transition(@Param("id") String id, @Param("from") String from, @Param("to") String to, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE UploadSession s SET s.status = 'COMPLETE', s.sha256 = :sha256, s.updatedAt = :now " +
+           "WHERE s.id = :id AND s.status = 'VERIFYING'")
+    int markComplete(@Param("id") String id, @Param("sha256") String sha256, @Param("now") LocalDateTime now);
+
+    // Remove a completed session as it is consumed; returns 0 if it is not (or no longer) complete
+    @Modifying
+    @Query("DELETE FROM UploadSession s WHERE s.id = :id AND s.status = 'COMPLETE'")
+    int deleteCompleted(@Param("id") String id);
+
+    long countByUserIdAndStatus(Long userId, String status);
+
+    List<UploadSession> findByUpdatedAtBefore(LocalDateTime cutoff);
+}
@@ -1,10 +1,15 @@
 package com._blog._blog.repository;
 
 import com._blog._blog.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -25,4 +30,107 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     // Check if email already exists (for registration)
     boolean existsByEmail(String email);
+    
+    // First page of the user directory, newest members first (keyset pagination on createdAt, id)
+    @Query("SELECT u FROM User u WHERE u.id <> :viewerId AND u.deleting = false ORDER BY u.createdAt DESC, u.id DESC")
+    List<User> findDirectory(@Param("viewerId") Long viewerId, Pageable pageable);
+    
+    // Next page of the user directory, strictly after the (createdAt, id) cursor
+    @Query("SELECT u FROM User u WHERE u.id <> :viewerId AND u.deleting = false " +
+           "AND (u.createdAt < :createdAt OR (u.createdAt = :createdAt AND u.id < :id)) " +
+           "ORDER BY u.createdAt DESC, u.id DESC")
+    List<User> findDirectoryBefore(@Param("viewerId") Long viewerId, @Param("createdAt") LocalDateTime createdAt,
+                                   @Param("id") Long id, Pageable pageable);
+    
+    // Usernames starting with :prefix (a LIKE pattern ending in %), in username order
+    // (see database_migrations/add_user_search.sql for the indexes behind both searches)
+    @Query(value = "SELECT u.* FROM users u WHERE lower(u.username) COLLATE \"C\" LIKE :prefix ESCAPE '\\' " +
+                   "AND u.id <> :viewerId AND u.is_deleting = false " +
+                   "ORDER BY lower(u.username) COLLATE \"C\" LIMIT :limit", nativeQuery = true)
+    List<User> searchByUsernamePrefix(@Param("prefix") String prefix, @Param("viewerId") Long viewerId, @Param("limit") int limit);
+    
+    // Usernames similar to :query (pg_trgm) that do not start with it, closest first
+    @Query(value = "SELECT u.* FROM users u WHERE lower(u.username) % :query " +
+                   "AND lower(u.username) COLLATE \"C\" NOT LIKE :prefix ESCAPE '\\' " +
+                   "AND u.id <> :viewerId AND u.is_deleting = false " +
+                   "ORDER BY lower(u.username) <-> :query LIMIT :limit", nativeQuery = true)
+    List<User> searchByUsernameSimilarity(@Param("query") String query, @Param("prefix") String prefix,
+                                          @Param("viewerId") Long viewerId, @Param("limit") int limit);
+    
+    // Atomically adjust the follower counter and return the new value. Not @Modifying: that would
+    // run it through executeUpdate, which cannot return the RETURNING value; a transaction is still required
+    @Transactional
+    @Query(value = "UPDATE users SET follower_count = follower_count + :delta WHERE id = :userId RETURNING follower_count", nativeQuery = true)
+    Long adjustFollowerCount(@Param("userId") Long userId, @Param("delta") long delta);
+    
+    // Atomically adjust the following counter and return the new value (see adjustFollowerCount)
+    @Transactional
+    @Query(value = "UPDATE users SET following_count = following_count + :delta WHERE id = :userId RETURNING following_count", nativeQuery = true)
+    Long adjustFollowingCount(@Param("userId") Long userId, @Param("delta") long delta);
+    
+    // Authors currently flagged as celebrities
+    @Query("SELECT u.id FROM User u WHERE u.celebrity = true")
+    List<Long> findCelebrityIds();
+    
+    // Flagged celebrities that have dropped below :threshold followers
+    @Query("SELECT u.id FROM User u WHERE u.celebrity = true AND u.followerCount < :threshold")
+    List<Long> findFormerCelebrityIds(@Param("threshold") long threshold);
+    
+    // Flag every author with at least :threshold followers
+    @Modifying
+    @Query("UPDATE User u SET u.celebrity = true WHERE u.followerCount >= :threshold AND u.celebrity = false")
+    int markCelebrities(@Param("threshold") long threshold);
+    
+    @Modifying
+    @Query("UPDATE User u SET u.celebrity = :celebrity WHERE u.id = :userId")
+    int updateCelebrity(@Param("userId") Long userId, @Param("celebrity") boolean celebrity);
+    
+    @Query("SELECT u.followerCount FROM User u WHERE u.id = :userId")
+    Long findFollowerCount(@Param("userId") Long userId);
+    
+    // Highest user id, used to walk the table in id ranges
+    @Query("SELECT COALESCE(MAX(u.id), 0) FROM User u")
+    Long findMaxId();
+    
+    // Lock the users in [fromId, toId), so counter adjustments wait for the recounts that follow
+    // in the same transaction, and the recounts see every adjustment committed before them
+    @Query(value = "SELECT COUNT(*) FROM (SELECT id FROM users WHERE id >= :fromId AND id < :toId ORDER BY id FOR UPDATE) locked",
+           nativeQuery = true)
+    long lockRange(@Param("fromId") long fromId, @Param("toId") long toId);
+    
+    // Recount subscriptions for users in [fromId, toId) and repair any drifted counter;
+    // call after lockRange in the same transaction, or a concurrent adjustment can be overwritten
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE users u SET follower_count = COALESCE(f.cnt, 0), following_count = COALESCE(g.cnt, 0) " +
+                   "FROM users u2 " +
+                   "LEFT JOIN (SELECT subscribed_to_id AS user_id, COUNT(*) AS cnt FROM subscriptions WHERE subscribed_to_id >= :fromId AND subscribed_to_id < :toId GROUP BY subscribed_to_id) f ON f.user_id = u2.id " +
+                   "LEFT JOIN (SELECT subscriber_id AS user_id, COUNT(*) AS cnt FROM subscriptions WHERE subscriber_id >= :fromId AND subscriber_id < :toId GROUP BY subscriber_id) g ON g.user_id = u2.id " +
+                   "WHERE u.id = u2.id AND u2.id >= :fromId AND u2.id < :toId " +
+                   "AND (u.follower_count <> COALESCE(f.cnt, 0) OR u.following_count <> COALESCE(g.cnt, 0))", nativeQuery = true)
+    int reconcileFollowCounters(@Param("fromId") long fromId, @Param("toId") long toId);
+    
+    // Atomically adjust the unread notification counter and return the new value (see adjustFollowerCount)
+    @Transactional
+    @Query(value = "UPDATE users SET unread_notification_count = unread_notification_count + :delta WHERE id = :userId " +
+                   "RETURNING unread_notification_count", nativeQuery = true)
+    Long adjustUnreadNotificationCount(@Param("userId") Long userId, @Param("delta") long delta);
+    
+    @Query("SELECT u.unreadNotificationCount FROM User u WHERE u.id = :userId")
+    Long findUnreadNotificationCount(@Param("userId") Long userId);
+    
+    // Recount unread notifications for users in [fromId, toId) and repair any drifted counter
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE users u SET unread_notification_count = COALESCE(n.cnt, 0) " +
+                   "FROM users u2 " +
+                   "LEFT JOIN (SELECT user_id, COUNT(*) AS cnt FROM notifications WHERE is_read = false AND user_id >= :fromId AND user_id < :toId GROUP BY user_id) n ON n.user_id = u2.id " +
+                   "WHERE u.id = u2.id AND u2.id >= :fromId AND u2.id < :toId " +
+                   "AND u.unread_notification_count <> COALESCE(n.cnt, 0)", nativeQuery = true)
+    int reconcileUnreadNotificationCounts(@Param("fromId") long fromId, @Param("toId") long toId);
+    
+    // Move the user's notification watermark (mark everything as read in one update)
+    @Modifying
+    @Query("UPDATE User u SET u.notificationsSeenAt = :seenAt WHERE u.id = :userId")
+    void updateNotificationsSeenAt(@Param("userId") Long userId, @Param("seenAt") LocalDateTime seenAt);
 }
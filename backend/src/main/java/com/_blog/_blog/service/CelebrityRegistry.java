@@ -0,0 +1,96 @@
+package com._blog._blog.service;
+
+import com._blog._blog.repository.TimelineRepository;
+import com._blog._blog.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks "celebrity" authors, i.e. authors with at least app.feed.celebrityFollowerThreshold
+ * subscribers. Their posts are not pushed into follower timelines; followers pull and merge
+ * them at read time instead.
+ *
+ * The set is persisted as users.is_celebrity, so authors that dropped below the threshold are
+ * found and backfilled also when that happened while the application was down.
+ */
+@Service
+public class CelebrityRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(CelebrityRegistry.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TimelineRepository timelineRepository;
+
+    @Value("${app.feed.celebrityFollowerThreshold:10000}")
+    private long followerThreshold;
+
+    @Value("${app.timeline.backfillSize:100}")
+    private int backfillSize;
+
+    private final Set<Long> celebrityIds = ConcurrentHashMap.newKeySet();
+
+    public CelebrityRegistry(MeterRegistry meterRegistry) {
+        Gauge.builder("feed.celebrity.authors", celebrityIds, Set::size)
+                .description("Authors whose posts are pulled at read time instead of pushed")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        celebrityIds.addAll(userRepository.findCelebrityIds());
+    }
+
+    public Set<Long> getCelebrityIds() {
+        return celebrityIds;
+    }
+
+    // Decide at publish time whether the author's new post is pushed into follower timelines
+    public boolean shouldPush(Long authorId) {
+        Long followers = userRepository.findFollowerCount(authorId);
+        if (followers != null && followers >= followerThreshold) {
+            if (celebrityIds.add(authorId)) {
+                // Flag before the post is skipped, so a later drop below the threshold backfills it
+                userRepository.updateCelebrity(authorId, true);
+            }
+            return false;
+        }
+        return !celebrityIds.contains(authorId);
+    }
+
+    /**
+     * Recompute the celebrity set. Authors that dropped below the threshold get their
+     * recent posts pushed into follower timelines, since those posts were never fanned out.
+     */
+    @Scheduled(fixedDelayString = "${app.feed.celebrityRefreshMs:60000}")
+    @Transactional
+    public void refresh() {
+        userRepository.markCelebrities(followerThreshold);
+
+        List<Long> dropped = userRepository.findFormerCelebrityIds(followerThreshold);
+        for (Long authorId : dropped) {
+            int pushed = timelineRepository.backfillAllSubscribers(authorId, backfillSize);
+            userRepository.updateCelebrity(authorId, false);
+            logger.info("Author {} dropped below the celebrity threshold, pushed {} timeline rows", authorId, pushed);
+        }
+
+        Set<Long> current = new HashSet<>(userRepository.findCelebrityIds());
+        celebrityIds.addAll(current);
+        celebrityIds.retainAll(current);
+    }
+}
@@ -0,0 +1,114 @@
+package com._blog._blog.service;
+
+import com._blog._blog.repository.PostRepository;
+import com._blog._blog.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Periodically recounts likes and comments and repairs drifted counters on Post, and does the
+ * same for the follower/following and unread notification counters on User.
+ * Walks the tables in id ranges so each repair is a short transaction. Each chunk locks its rows
+ * before recounting, so counter changes made meanwhile wait for the repair instead of being
+ * overwritten by it.
+ */
+@Service
+public class CounterReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CounterReconciliationService.class);
+
+    private static final long CHUNK_SIZE = 10_000;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LikeCounterBuffer likeCounterBuffer;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public CounterReconciliationService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Autowired
+    private UnreadNotificationCounter unreadNotificationCounter;
+
+    @Scheduled(cron = "${app.counters.reconcileCron:0 30 3 * * *}")
+    public void reconcilePostCounters() {
+        long maxId = postRepository.findMaxId();
+        int repaired = 0;
+        int skipped = 0;
+        for (long fromId = 0; fromId <= maxId; fromId += CHUNK_SIZE) {
+            long from = fromId;
+            // Buffered like changes are flushed right before each chunk and no like can land
+            // until it commits, otherwise they would be applied on top of the recount
+            Integer chunkRepaired = likeCounterBuffer.recount(() -> transactionTemplate.execute(status -> {
+                postRepository.lockRange(from, from + CHUNK_SIZE);
+                return postRepository.reconcileCounters(from, from + CHUNK_SIZE);
+            }));
+            if (chunkRepaired == null) {
+                skipped++;
+            } else {
+                repaired += chunkRepaired;
+            }
+        }
+        if (skipped > 0) {
+            logger.warn("Skipped {} post chunks because buffered like changes could not be flushed", skipped);
+        }
+        if (repaired > 0) {
+            logger.warn("Repaired like/comment counters on {} posts", repaired);
+        }
+    }
+
+    @Scheduled(cron = "${app.counters.reconcileCron:0 30 3 * * *}")
+    public void reconcileUserCounters() {
+        long maxId = userRepository.findMaxId();
+        int repaired = 0;
+        int repairedUnread = 0;
+        for (long fromId = 0; fromId <= maxId; fromId += CHUNK_SIZE) {
+            int[] chunkRepaired = reconcileUserChunk(fromId);
+            if (chunkRepaired != null) {
+                repaired += chunkRepaired[0];
+                repairedUnread += chunkRepaired[1];
+            }
+        }
+        if (repaired > 0) {
+            logger.warn("Repaired follower/following counters on {} users", repaired);
+        }
+        if (repairedUnread > 0) {
+            unreadNotificationCounter.invalidateAll();
+            logger.warn("Repaired unread notification counters on {} users", repairedUnread);
+        }
+    }
+
+    // Subscribing and notification fan-out lock several user rows, so locking a whole chunk can
+    // deadlock with them; the chunk losing the deadlock is retried once, then skipped until next time
+    private int[] reconcileUserChunk(long fromId) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    userRepository.lockRange(fromId, fromId + CHUNK_SIZE);
+                    return new int[] {
+                        userRepository.reconcileFollowCounters(fromId, fromId + CHUNK_SIZE),
+                        userRepository.reconcileUnreadNotificationCounts(fromId, fromId + CHUNK_SIZE)
+                    };
+                });
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= 2) {
+                    logger.warn("Skipped user counters in [{}, {}): {}", fromId, fromId + CHUNK_SIZE, e.getMessage());
+                    return null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com._blog._blog.service;
+
+import com._blog._blog.entity.Post;
+import com._blog._blog.entity.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Builds feed DTOs for a whole page of posts at once.
+ * Like and comment counts come from the denormalized counters on Post (plus any
+ * unflushed like changes), and the viewer's liked flags come from LikeIndex, which
+ * needs at most one query for the whole page. previewUrl is the downscaled image
+ * variant that fits a feed card, or the original media when it has none.
+ */
+@Service
+public class FeedService {
+
+    @Autowired
+    private LikeIndex likeIndex;
+
+    @Autowired
+    private LikeCounterBuffer likeCounterBuffer;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    public List<Map<String, Object>> toDTOs(List<Post> posts, User viewer) {
+        if (posts.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Resolve the viewer's likes for the whole page from the in-memory index
+        Set<Long> likedPostIds = new HashSet<>();
+        if (viewer != null) {
+            List<Long> postIds = posts.stream().map(Post::getId).collect(Collectors.toList());
+            likedPostIds.addAll(likeIndex.likedAmong(viewer.getId(), postIds));
+        }
+
+        List<Map<String, Object>> postDTOs = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            Map<String, Object> dto = new HashMap<>();
+            dto.put("id", post.getId());
+            dto.put("title", post.getTitle());
+            dto.put("description", post.getDescription());
+            dto.put("mediaUrl", post.getMediaUrl() != null ? post.getMediaUrl() : "");
+            dto.put("previewUrl", imageVariantService.previewUrl(post));
+            dto.put("createdAt", post.getCreatedAt());
+            dto.put("username", post.getUser().getUsername());
+            dto.put("likeCount", likeCount(post));
+            dto.put("isLiked", likedPostIds.contains(post.getId()));
+            dto.put("commentCount", post.getCommentCount());
+            postDTOs.add(dto);
+        }
+        return postDTOs;
+    }
+
+    // Stored counter plus the like changes not yet flushed by LikeCounterBuffer
+    public long likeCount(Post post) {
+        return Math.max(post.getLikeCount() + likeCounterBuffer.pendingDelta(post.getId()), 0);
+    }
+
+    public Map<String, Object> toDTO(Post post, User viewer) {
+        return toDTOs(List.of(post), viewer).get(0);
+    }
+}
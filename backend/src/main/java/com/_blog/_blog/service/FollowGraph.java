@@ -0,0 +1,241 @@
+package com._blog._blog.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory copy of the subscriptions table, answering "does A follow B", "who follows X" and
+ * "whom does X follow" without a query.
+ *
+ * Every user has a sorted long[] of the ids they follow and one of the ids following them. The
+ * arrays are never modified in place: a change replaces the array with an updated copy, so
+ * readers need no locking. The graph is loaded when the application starts and changed only
+ * after the transaction that changed the subscriptions table commits.
+ */
+@Service
+public class FollowGraph {
+
+    private static final Logger logger = LoggerFactory.getLogger(FollowGraph.class);
+
+    private static final long[] EMPTY = new long[0];
+
+    private final ConcurrentHashMap<Long, long[]> following = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, long[]> followers = new ConcurrentHashMap<>();
+    private final AtomicLong edges = new AtomicLong();
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    // Followed users expanded per suggestion request, bounds the work for users following many
+    @Value("${app.follows.suggestions.maxExpanded:500}")
+    private int maxExpanded;
+
+    @Getter
+    @AllArgsConstructor
+    public static class Suggestion {
+        private long userId;
+        private int mutualCount; // Followed users of the viewer who follow this user
+    }
+
+    public FollowGraph(DataSource dataSource, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        // The driver only streams rows inside a transaction and with a fetch size
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(10_000);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        Gauge.builder("follows.graph.edges", edges, AtomicLong::get)
+                .description("Subscriptions held in the in-memory follow graph")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        long start = System.currentTimeMillis();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            load(following, "SELECT subscriber_id, subscribed_to_id FROM subscriptions ORDER BY subscriber_id, subscribed_to_id");
+            load(followers, "SELECT subscribed_to_id, subscriber_id FROM subscriptions ORDER BY subscribed_to_id, subscriber_id");
+        });
+        edges.set(following.values().stream().mapToLong(ids -> ids.length).sum());
+        logger.info("Loaded {} subscriptions into the follow graph in {} ms", edges.get(), System.currentTimeMillis() - start);
+    }
+
+    // Rows arrive grouped by key and sorted by value, so each group is already a sorted array
+    private void load(Map<Long, long[]> adjacency, String sql) {
+        long[][] buffer = {new long[64]};
+        int[] size = {0};
+        long[] key = {-1};
+        streamingJdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            long from = rs.getLong(1);
+            if (from != key[0]) {
+                if (size[0] > 0) {
+                    adjacency.put(key[0], Arrays.copyOf(buffer[0], size[0]));
+                }
+                key[0] = from;
+                size[0] = 0;
+            }
+            if (size[0] == buffer[0].length) {
+                buffer[0] = Arrays.copyOf(buffer[0], size[0] * 2);
+            }
+            buffer[0][size[0]++] = rs.getLong(2);
+        });
+        if (size[0] > 0) {
+            adjacency.put(key[0], Arrays.copyOf(buffer[0], size[0]));
+        }
+    }
+
+    public boolean isFollowing(long subscriberId, long authorId) {
+        return Arrays.binarySearch(following(subscriberId), authorId) >= 0;
+    }
+
+    // Sorted ids of the users subscriberId follows; do not modify
+    public long[] following(long subscriberId) {
+        return following.getOrDefault(subscriberId, EMPTY);
+    }
+
+    // Sorted ids of the users following authorId; do not modify
+    public long[] followers(long authorId) {
+        return followers.getOrDefault(authorId, EMPTY);
+    }
+
+    // Record a new subscription once the current transaction commits
+    public void onSubscribed(long subscriberId, long authorId) {
+        afterCommit(() -> {
+            following.compute(subscriberId, (id, ids) -> {
+                long[] updated = insert(ids, authorId);
+                if (updated != ids) {
+                    edges.incrementAndGet();
+                }
+                return updated;
+            });
+            followers.compute(authorId, (id, ids) -> insert(ids, subscriberId));
+        });
+    }
+
+    // Drop a subscription once the current transaction commits
+    public void onUnsubscribed(long subscriberId, long authorId) {
+        afterCommit(() -> {
+            following.computeIfPresent(subscriberId, (id, ids) -> {
+                long[] updated = remove(ids, authorId);
+                if (updated != ids) {
+                    edges.decrementAndGet();
+                }
+                return updated;
+            });
+            followers.computeIfPresent(authorId, (id, ids) -> remove(ids, subscriberId));
+        });
+    }
+
+    // Forget every subscription of a purged user, in both directions
+    public void removeUser(long userId) {
+        long[] followed = following.remove(userId);
+        if (followed != null) {
+            edges.addAndGet(-followed.length);
+            for (long authorId : followed) {
+                followers.computeIfPresent(authorId, (id, ids) -> remove(ids, userId));
+            }
+        }
+        long[] subscribers = followers.remove(userId);
+        if (subscribers != null) {
+            for (long subscriberId : subscribers) {
+                following.computeIfPresent(subscriberId, (id, ids) -> {
+                    long[] updated = remove(ids, userId);
+                    if (updated != ids) {
+                        edges.decrementAndGet();
+                    }
+                    return updated;
+                });
+            }
+        }
+    }
+
+    /**
+     * Friends-of-friends the user does not follow yet, ranked by how many of the users they
+     * follow follow the candidate, then by follower count, then by id.
+     */
+    public List<Suggestion> suggest(long userId, int limit) {
+        long[] mine = following(userId);
+        Map<Long, int[]> mutualCounts = new HashMap<>();
+        for (int i = 0; i < mine.length && i < maxExpanded; i++) {
+            for (long candidate : following(mine[i])) {
+                if (candidate != userId && Arrays.binarySearch(mine, candidate) < 0) {
+                    mutualCounts.computeIfAbsent(candidate, id -> new int[1])[0]++;
+                }
+            }
+        }
+
+        List<Suggestion> suggestions = new ArrayList<>(mutualCounts.size());
+        mutualCounts.forEach((candidate, count) -> suggestions.add(new Suggestion(candidate, count[0])));
+        suggestions.sort(Comparator.comparingInt(Suggestion::getMutualCount).reversed()
+                .thenComparing(Comparator.comparingInt((Suggestion s) -> followers(s.getUserId()).length).reversed())
+                .thenComparingLong(Suggestion::getUserId));
+        return suggestions.size() > limit ? suggestions.subList(0, limit) : suggestions;
+    }
+
+    // Copy-on-write insert into a sorted array; returns the same array if the id is present
+    private static long[] insert(long[] ids, long id) {
+        if (ids == null) {
+            return new long[] {id};
+        }
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return ids;
+        }
+        int at = -index - 1;
+        long[] updated = new long[ids.length + 1];
+        System.arraycopy(ids, 0, updated, 0, at);
+        updated[at] = id;
+        System.arraycopy(ids, at, updated, at + 1, ids.length - at);
+        return updated;
+    }
+
+    // Copy-on-write removal; returns null (dropping the map entry) once the array is empty
+    private static long[] remove(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        long[] updated = new long[ids.length - 1];
+        System.arraycopy(ids, 0, updated, 0, index);
+        System.arraycopy(ids, index + 1, updated, index, ids.length - index - 1);
+        return updated;
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+}
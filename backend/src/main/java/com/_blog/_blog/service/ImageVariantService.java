@@ -0,0 +1,340 @@
+package com._blog._blog.service;
+
+import com._blog._blog.entity.Post;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Generates downscaled JPEG variants of uploaded images in the background, so feed cards do not
+ * load originals of up to 50 MB.
+ *
+ * Once a post with new image media commits, a task is queued on a bounded pool of
+ * app.media.variants.workers threads. When the queue is full the task is dropped and counted
+ * instead of running on the request thread; the post then keeps serving its original. A worker
+ * decodes the image with source subsampling (so a huge original is never fully expanded in
+ * memory), writes one variant per configured width smaller than the original through MediaStore
+ * and records them on the post, unless its media changed in the meantime.
+ */
+@Service
+public class ImageVariantService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantService.class);
+
+    // Animated GIFs would lose their animation, and WebP has no ImageIO reader in the JDK
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "bmp");
+
+    private static final String SET_VARIANTS =
+            "UPDATE posts SET media_variants = :variants " +
+            "WHERE id = :postId AND media_url = :mediaUrl AND deleted_at IS NULL";
+
+    @Autowired
+    private MediaStore mediaStore;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Value("${app.media.variants.widths:320,640,1280}")
+    private List<Integer> widths;
+
+    @Value("${app.media.variants.previewWidth:640}")
+    private int previewWidth;
+
+    @Value("${app.media.variants.quality:0.8}")
+    private float quality;
+
+    // Images with more pixels get no variants: even subsampled, decoding them takes too long
+    @Value("${app.media.variants.maxSourcePixels:100000000}")
+    private long maxSourcePixels;
+
+    // Upper bound on the decoded image, whatever its shape
+    @Value("${app.media.variants.maxDecodedPixels:16777216}")
+    private long maxDecodedPixels;
+
+    @Value("${app.media.variants.workers:2}")
+    private int workerCount;
+
+    @Value("${app.media.variants.queueCapacity:100}")
+    private int queueCapacity;
+
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private ThreadPoolExecutor workers;
+
+    private final Counter generated;
+    private final Counter skipped;
+    private final Counter rejected;
+    private final Counter failures;
+    private final Timer duration;
+
+    public ImageVariantService(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.meterRegistry = meterRegistry;
+        this.generated = Counter.builder("media.variants.generated")
+                .description("Image variants written").register(meterRegistry);
+        this.skipped = Counter.builder("media.variants.skipped")
+                .description("Media that needed no variants (not an image, or already small)").register(meterRegistry);
+        this.rejected = Counter.builder("media.variants.rejected")
+                .description("Variant tasks dropped because the queue was full").register(meterRegistry);
+        this.failures = Counter.builder("media.variants.failures")
+                .description("Variant tasks that failed").register(meterRegistry);
+        this.duration = Timer.builder("media.variants.duration")
+                .description("Time to generate the variants of one image").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        Gauge.builder("media.variants.queue.depth", workers, pool -> pool.getQueue().size())
+                .description("Images waiting for variant generation")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    @TransactionalEventListener
+    public void onPostMediaChanged(PostMediaChangedEvent event) {
+        if (!isImage(event.getMediaUrl())) {
+            return;
+        }
+        try {
+            workers.execute(() -> generate(event.getPostId(), event.getMediaUrl()));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+        }
+    }
+
+    // The variant that best fits a feed card, or the original when there is none
+    public String previewUrl(Post post) {
+        if (post.getMediaUrl() == null) {
+            return "";
+        }
+        TreeMap<Integer, String> variants = parse(post.getMediaVariants());
+        if (variants.isEmpty()) {
+            return post.getMediaUrl();
+        }
+        Map.Entry<Integer, String> fit = variants.ceilingEntry(previewWidth);
+        return fit != null ? fit.getValue() : variants.lastEntry().getValue();
+    }
+
+    // Drop the references taken by the variants of a removed media
+    public void releaseVariants(String mediaVariants) {
+        for (String url : parse(mediaVariants).values()) {
+            mediaStore.release(url);
+        }
+    }
+
+    // Same for media replaced in the current transaction
+    public void releaseVariantsAfterCommit(String mediaVariants) {
+        for (String url : parse(mediaVariants).values()) {
+            mediaStore.releaseAfterCommit(url);
+        }
+    }
+
+    private void generate(Long postId, String mediaUrl) {
+        Path file = mediaStore.resolve(mediaUrl);
+        if (file == null) {
+            return;
+        }
+        TreeMap<Integer, StagedMedia> staged = new TreeMap<>();
+        try {
+            TreeMap<Integer, byte[]> encoded = duration.recordCallable(() -> encodeVariants(file));
+            if (encoded.isEmpty()) {
+                skipped.increment();
+                return;
+            }
+            // Write the files before taking a connection, the transaction only records them
+            for (Map.Entry<Integer, byte[]> variant : encoded.entrySet()) {
+                staged.put(variant.getKey(), mediaStore.stage(new ByteArrayInputStream(variant.getValue()), "variant.jpg"));
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                TreeMap<Integer, String> urls = new TreeMap<>();
+                try {
+                    for (Map.Entry<Integer, StagedMedia> variant : staged.entrySet()) {
+                        urls.put(variant.getKey(), mediaStore.adopt(variant.getValue()));
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                int updated = namedParameterJdbcTemplate.update(SET_VARIANTS, new MapSqlParameterSource()
+                        .addValue("variants", format(urls))
+                        .addValue("postId", postId)
+                        .addValue("mediaUrl", mediaUrl));
+                if (updated == 0) {
+                    // The post was deleted or got other media meanwhile: drop the references again
+                    status.setRollbackOnly();
+                } else {
+                    generated.increment(urls.size());
+                }
+            });
+        } catch (Exception e) {
+            failures.increment();
+            logger.warn("Failed to generate variants of {} for post {}: {}", mediaUrl, postId, e.getMessage());
+        } finally {
+            staged.values().forEach(mediaStore::discard);
+        }
+    }
+
+    // Encoded JPEG per target width, largest first scaled from the decoded image, each smaller
+    // one from the previous variant; empty when the image is already small, too large or unreadable
+    private TreeMap<Integer, byte[]> encodeVariants(Path file) throws IOException {
+        TreeMap<Integer, byte[]> encoded = new TreeMap<>();
+        BufferedImage source;
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return encoded;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                long pixels = (long) width * height;
+                if (pixels > maxSourcePixels) {
+                    logger.info("Skipping variants of {}: {}x{} exceeds {} pixels", file.getFileName(), width, height, maxSourcePixels);
+                    return encoded;
+                }
+                List<Integer> targets = widths.stream()
+                        .filter(target -> target < width)
+                        .sorted((a, b) -> b - a)
+                        .collect(Collectors.toList());
+                if (targets.isEmpty()) {
+                    return encoded;
+                }
+                // Decode at no more than twice the largest variant, enough for a clean downscale, and
+                // within maxDecodedPixels: a very tall image would otherwise decode at full height
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, width / (targets.get(0) * 2));
+                subsampling = Math.max(subsampling, (int) Math.ceil(Math.sqrt((double) pixels / maxDecodedPixels)));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                source = reader.read(0, param);
+
+                BufferedImage previous = source;
+                for (int target : targets) {
+                    if (target >= source.getWidth()) {
+                        continue; // Decoded narrower than this variant, it would be an upscale
+                    }
+                    previous = scale(previous, target);
+                    encoded.put(target, encodeJpeg(previous));
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+        return encoded;
+    }
+
+    private static BufferedImage scale(BufferedImage image, int width) {
+        int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+        // JPEG has no alpha: flatten onto white
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static boolean isImage(String mediaUrl) {
+        if (mediaUrl == null || mediaUrl.lastIndexOf('.') < 0) {
+            return false;
+        }
+        return IMAGE_EXTENSIONS.contains(mediaUrl.substring(mediaUrl.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static TreeMap<Integer, String> parse(String mediaVariants) {
+        TreeMap<Integer, String> variants = new TreeMap<>();
+        if (mediaVariants == null || mediaVariants.isEmpty()) {
+            return variants;
+        }
+        for (String entry : mediaVariants.split(";")) {
+            int eq = entry.indexOf('=');
+            if (eq > 0) {
+                variants.put(Integer.parseInt(entry.substring(0, eq)), entry.substring(eq + 1));
+            }
+        }
+        return variants;
+    }
+
+    private static String format(Map<Integer, String> variants) {
+        List<String> entries = new ArrayList<>();
+        variants.forEach((width, url) -> entries.add(width + "=" + url));
+        return String.join(";", entries);
+    }
+}
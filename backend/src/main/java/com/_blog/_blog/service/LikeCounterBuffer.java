@@ -0,0 +1,129 @@
+package com._blog._blog.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces like counter changes in memory and writes them to posts.like_count in periodic
+ * JDBC batches, so a burst of likes on one post costs one UPDATE instead of one per click.
+ * The pending deltas live in a ConcurrentHashMap; each key is updated and drained atomically,
+ * so a delta is never lost between an add and a flush.
+ *
+ * A like holds the shared side of changeLock from its row change until its delta is buffered;
+ * recount holds the exclusive side, so a recount never sees a like row whose delta is not yet
+ * flushed (it would otherwise be counted twice, once by the recount and once by the next flush).
+ */
+@Service
+public class LikeCounterBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LikeCounterBuffer.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock changeLock = new ReentrantReadWriteLock();
+
+    private final Counter flushedRows;
+    private final Counter flushFailures;
+
+    public LikeCounterBuffer(MeterRegistry meterRegistry) {
+        Gauge.builder("likes.buffer.pending", pending, Map::size)
+                .description("Posts with like counter changes not yet written to the database")
+                .register(meterRegistry);
+        this.flushedRows = Counter.builder("likes.buffer.flushed")
+                .description("Post like counters updated by buffer flushes")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("likes.buffer.failures")
+                .description("Like buffer flushes that failed and were requeued")
+                .register(meterRegistry);
+    }
+
+    // Run a like row change and the add() of its delta as one step with respect to recount()
+    public <T> T change(Supplier<T> likeChange) {
+        changeLock.readLock().lock();
+        try {
+            return likeChange.get();
+        } finally {
+            changeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flush, then run an absolute recount of like_count while no like is between its row change
+     * and its add(). Returns null without recounting if the flush failed and deltas are still pending.
+     */
+    public <T> T recount(Supplier<T> recount) {
+        changeLock.writeLock().lock();
+        try {
+            flush();
+            if (!pending.isEmpty()) {
+                return null;
+            }
+            return recount.get();
+        } finally {
+            changeLock.writeLock().unlock();
+        }
+    }
+
+    public void add(Long postId, long delta) {
+        pending.merge(postId, delta, Long::sum);
+    }
+
+    // Delta not yet flushed for a post, to be added to the stored like_count when reading
+    public long pendingDelta(Long postId) {
+        return pending.getOrDefault(postId, 0L);
+    }
+
+    @Scheduled(fixedDelayString = "${app.likes.flushMs:1000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Drain in post id order so every flush locks post rows in the same order
+        Map<Long, Long> drained = new TreeMap<>();
+        for (Long postId : new ArrayList<>(pending.keySet())) {
+            Long delta = pending.remove(postId);
+            if (delta != null && delta != 0) {
+                drained.put(postId, delta);
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> args = new ArrayList<>(drained.size());
+        drained.forEach((postId, delta) -> args.add(new Object[] {delta, postId}));
+        try {
+            jdbcTemplate.batchUpdate("UPDATE posts SET like_count = like_count + ? WHERE id = ?", args);
+            flushedRows.increment(args.size());
+        } catch (RuntimeException e) {
+            // Put the deltas back so the next flush retries them
+            drained.forEach(this::add);
+            flushFailures.increment();
+            logger.warn("Failed to flush {} like counters, will retry: {}", drained.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
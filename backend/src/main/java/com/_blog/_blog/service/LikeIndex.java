@@ -0,0 +1,284 @@
+package com._blog._blog.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory index from post id to a compressed (Roaring) bitmap of the ids of users who liked it,
+ * used to answer "which of these posts has this user liked" without a query.
+ *
+ * A lookup never loads bitmaps itself: posts that are not cached are answered with one query for
+ * the viewer's own likes among them, and their bitmaps are queued for a background loader. The
+ * loader skips posts with more than app.likes.index.maxLikersPerPost likers, or whose bitmap would
+ * take more than a quarter of app.likes.index.maxBytes, so one viral post cannot evict everything
+ * else (or itself). Cached bitmaps are kept up to date by LikeService and evicted in LRU order once
+ * app.likes.index.maxPosts or app.likes.index.maxBytes is exceeded.
+ *
+ * A load races with concurrent likes, so changes to a post being loaded are logged and replayed
+ * onto the loaded bitmap before it is installed. Replaying a change the load already saw is
+ * harmless, since each change sets the user's bit to its final state.
+ */
+@Service
+public class LikeIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(LikeIndex.class);
+
+    // Rough per-entry overhead of the map entry, key and bitmap object
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Value("${app.likes.index.maxPosts:10000}")
+    private int maxPosts;
+
+    @Value("${app.likes.index.maxBytes:67108864}")
+    private long maxBytes;
+
+    @Value("${app.likes.index.maxLikersPerPost:1000000}")
+    private long maxLikersPerPost;
+
+    // Access-ordered, so iteration starts at the least recently used post; guarded by "this"
+    private final LinkedHashMap<Long, Entry> bitmaps = new LinkedHashMap<>(16, 0.75f, true);
+    // Posts being loaded, with the changes seen meanwhile as {userId, liked ? 1 : 0}; guarded by "this"
+    private final Map<Long, List<long[]>> loading = new HashMap<>();
+    // Posts found too large to cache, not loaded again until they fall out of this set; guarded by "this"
+    private final LinkedHashSet<Long> oversized = new LinkedHashSet<>();
+    private long totalBytes = 0;
+
+    private final ThreadPoolExecutor loader;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter skipped;
+
+    private static class Entry {
+        private final Roaring64Bitmap likers;
+        private long bytes;
+
+        private Entry(Roaring64Bitmap likers) {
+            this.likers = likers;
+            this.bytes = likers.getLongSizeInBytes() + ENTRY_OVERHEAD_BYTES;
+        }
+    }
+
+    public LikeIndex(
+            @Value("${app.likes.index.loadQueueCapacity:1000}") int loadQueueCapacity,
+            MeterRegistry meterRegistry) {
+        this.loader = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(loadQueueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "like-index-loader");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        Gauge.builder("likes.index.posts", this, index -> index.size())
+                .description("Posts whose likers are held in memory")
+                .register(meterRegistry);
+        Gauge.builder("likes.index.bytes", this, index -> index.bytes())
+                .description("Estimated memory used by the liker bitmaps")
+                .register(meterRegistry);
+        this.hits = Counter.builder("likes.index.lookups").tag("result", "hit")
+                .description("Liked flag lookups answered from memory")
+                .register(meterRegistry);
+        this.misses = Counter.builder("likes.index.lookups").tag("result", "miss")
+                .description("Liked flag lookups answered with a query for the viewer's likes")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("likes.index.skipped")
+                .description("Posts not cached because their likers exceed the per-post budget")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        loader.shutdownNow();
+    }
+
+    // Which of the given posts the user has liked
+    public Set<Long> likedAmong(Long userId, Collection<Long> postIds) {
+        Set<Long> liked = new HashSet<>();
+        List<Long> missing = new ArrayList<>();
+        synchronized (this) {
+            for (Long postId : postIds) {
+                Entry entry = bitmaps.get(postId);
+                if (entry == null) {
+                    missing.add(postId);
+                } else if (entry.likers.contains(userId)) {
+                    liked.add(postId);
+                }
+            }
+        }
+        hits.increment(postIds.size() - missing.size());
+        if (missing.isEmpty()) {
+            return liked;
+        }
+        misses.increment(missing.size());
+
+        // Only the viewer's own likes are read on the request; the bitmaps are loaded in the background
+        liked.addAll(namedParameterJdbcTemplate.queryForList(
+                "SELECT post_id FROM likes WHERE user_id = :userId AND post_id IN (:postIds)",
+                new MapSqlParameterSource("userId", userId).addValue("postIds", missing),
+                Long.class));
+        for (Long postId : missing) {
+            scheduleLoad(postId);
+        }
+        return liked;
+    }
+
+    // Record a committed like or unlike
+    public synchronized void onLikeChanged(Long postId, Long userId, boolean liked) {
+        List<long[]> changes = loading.get(postId);
+        if (changes != null) {
+            changes.add(new long[] {userId, liked ? 1 : 0});
+        }
+        Entry entry = bitmaps.get(postId);
+        if (entry == null) {
+            return;
+        }
+        if (liked) {
+            entry.likers.addLong(userId);
+        } else {
+            entry.likers.removeLong(userId);
+        }
+        totalBytes -= entry.bytes;
+        entry.bytes = entry.likers.getLongSizeInBytes() + ENTRY_OVERHEAD_BYTES;
+        totalBytes += entry.bytes;
+        evictOverBudget();
+    }
+
+    public synchronized void evictPost(Long postId) {
+        loading.remove(postId); // The load in progress is not installed
+        oversized.remove(postId);
+        Entry entry = bitmaps.remove(postId);
+        if (entry != null) {
+            totalBytes -= entry.bytes;
+        }
+    }
+
+    // Likes of a deleted user are removed in bulk, so drop them from every cached bitmap
+    public synchronized void removeUser(Long userId) {
+        for (List<long[]> changes : loading.values()) {
+            changes.add(new long[] {userId, 0});
+        }
+        for (Entry entry : bitmaps.values()) {
+            if (entry.likers.contains(userId)) {
+                entry.likers.removeLong(userId);
+                totalBytes -= entry.bytes;
+                entry.bytes = entry.likers.getLongSizeInBytes() + ENTRY_OVERHEAD_BYTES;
+                totalBytes += entry.bytes;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return bitmaps.size();
+    }
+
+    public synchronized long bytes() {
+        return totalBytes;
+    }
+
+    // Queue a background load unless the post is cached, already loading or known to be too large
+    private void scheduleLoad(Long postId) {
+        synchronized (this) {
+            if (bitmaps.containsKey(postId) || loading.containsKey(postId) || oversized.contains(postId)) {
+                return;
+            }
+            loading.put(postId, new ArrayList<>());
+        }
+        try {
+            loader.execute(() -> load(postId));
+        } catch (RejectedExecutionException e) {
+            // Loader backed up: a later lookup queues it again
+            synchronized (this) {
+                loading.remove(postId);
+            }
+        }
+    }
+
+    private void load(Long postId) {
+        Roaring64Bitmap likers = new Roaring64Bitmap();
+        long[] count = {0};
+        try {
+            // One row past the limit tells an oversized post without reading all of its likers
+            namedParameterJdbcTemplate.query(
+                    "SELECT user_id FROM likes WHERE post_id = :postId LIMIT :limit",
+                    new MapSqlParameterSource("postId", postId).addValue("limit", maxLikersPerPost + 1),
+                    (RowCallbackHandler) rs -> {
+                        likers.addLong(rs.getLong(1));
+                        count[0]++;
+                    });
+        } catch (RuntimeException e) {
+            logger.warn("Failed to load the likers of post {}: {}", postId, e.getMessage());
+            synchronized (this) {
+                loading.remove(postId);
+            }
+            return;
+        }
+
+        synchronized (this) {
+            List<long[]> changes = loading.remove(postId);
+            if (changes == null) {
+                return; // Evicted while loading
+            }
+            for (long[] change : changes) {
+                if (change[1] == 1) {
+                    likers.addLong(change[0]);
+                } else {
+                    likers.removeLong(change[0]);
+                }
+            }
+            likers.runOptimize();
+            Entry entry = new Entry(likers);
+            if (count[0] > maxLikersPerPost || entry.bytes > maxBytes / 4) {
+                skipped.increment();
+                oversized.add(postId);
+                if (oversized.size() > maxPosts) {
+                    oversized.remove(oversized.iterator().next());
+                }
+                return;
+            }
+            put(postId, entry);
+            evictOverBudget();
+        }
+    }
+
+    private void put(Long postId, Entry entry) {
+        bitmaps.put(postId, entry);
+        totalBytes += entry.bytes;
+    }
+
+    private void evictOverBudget() {
+        Iterator<Entry> eldest = bitmaps.values().iterator();
+        while (eldest.hasNext() && (bitmaps.size() > maxPosts || totalBytes > maxBytes)) {
+            totalBytes -= eldest.next().bytes;
+            eldest.remove();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com._blog._blog.service;
+
+import com._blog._blog.entity.User;
+import com._blog._blog.repository.LikeRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Sets a user's like on a post idempotently. The like row is inserted or deleted with one
+ * statement, and the counter change goes through LikeCounterBuffer instead of updating the
+ * post row on every click. LikeIndex is updated once the like is committed.
+ */
+@Service
+public class LikeService {
+
+    @Autowired
+    private LikeRepository likeRepository;
+
+    @Autowired
+    private LikeCounterBuffer likeCounterBuffer;
+
+    @Autowired
+    private LikeIndex likeIndex;
+
+    @Getter
+    @AllArgsConstructor
+    public static class LikeState {
+        // False when the like was already in the requested state
+        private boolean changed;
+        private boolean liked;
+        private long likeCount;
+    }
+
+    // Returns null when the post does not exist
+    public LikeState setLiked(Long postId, User user, boolean liked) {
+        // The row change and its buffered delta must not be split by a counter recount
+        return likeCounterBuffer.change(() -> applyLike(postId, user, liked));
+    }
+
+    private LikeState applyLike(Long postId, User user, boolean liked) {
+        List<Object[]> rows;
+        try {
+            rows = liked
+                    ? likeRepository.insertIfAbsent(postId, user.getId())
+                    : likeRepository.deleteIfPresent(postId, user.getId());
+        } catch (DataIntegrityViolationException e) {
+            // Foreign key violation: the post does not exist
+            return null;
+        }
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        Object[] row = rows.get(0);
+        boolean changed = ((Number) row[0]).longValue() > 0;
+        long storedCount = ((Number) row[1]).longValue();
+        if (changed) {
+            likeCounterBuffer.add(postId, liked ? 1 : -1);
+            likeIndex.onLikeChanged(postId, user.getId(), liked);
+        }
+
+        // The stored counter plus the unflushed delta, which includes this change
+        long likeCount = Math.max(storedCount + likeCounterBuffer.pendingDelta(postId), 0);
+        return new LikeState(changed, liked, likeCount);
+    }
+}
@@ -0,0 +1,145 @@
+package com._blog._blog.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Removes files under uploads/ that nothing references any more, e.g. left behind by a crash
+ * between moving a file into the store and committing the post that uses it.
+ *
+ * A file is kept if media_objects has a row for it or, for files stored before the media store
+ * existed, if a post (tombstones included) still has it as media_url. Only files older than
+ * app.media.orphans.minAgeHours are considered, so media on its way into a post is never touched.
+ * Staged upload-*.part files in uploads/.tmp older than that are removed as well.
+ */
+@Service
+public class MediaOrphanSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaOrphanSweeper.class);
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private MediaStore mediaStore;
+
+    @Value("${app.media.orphans.minAgeHours:24}")
+    private long minAgeHours;
+
+    @Value("${app.media.orphans.batchSize:500}")
+    private int batchSize;
+
+    private final Counter removed;
+
+    public MediaOrphanSweeper(MeterRegistry meterRegistry) {
+        this.removed = Counter.builder("media.orphans.removed")
+                .description("Unreferenced media files removed")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.media.orphans.cron:0 30 4 * * *}")
+    public void sweep() {
+        try {
+            int total = sweepOrphans();
+            if (total > 0) {
+                logger.info("Removed {} orphaned media files", total);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to sweep orphaned media: {}", e.getMessage());
+        }
+    }
+
+    // Returns the number of files removed
+    public int sweepOrphans() throws IOException {
+        Path root = Paths.get(MediaStore.UPLOAD_DIR).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        Path tempDir = mediaStore.tempDir().toAbsolutePath().normalize();
+        Instant cutoff = Instant.now().minus(Duration.ofHours(minAgeHours));
+
+        int total = 0;
+        List<Path> batch = new ArrayList<>(batchSize);
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file) || !isOlder(file, cutoff)) {
+                    continue;
+                }
+                if (file.startsWith(tempDir)) {
+                    // Upload sessions clean up their own files (see UploadService)
+                    if (file.getFileName().toString().startsWith("upload-") && Files.deleteIfExists(file)) {
+                        removed.increment();
+                        total++;
+                    }
+                    continue;
+                }
+                batch.add(file);
+                if (batch.size() == batchSize) {
+                    total += removeUnreferenced(root, batch);
+                    batch.clear();
+                }
+            }
+        }
+        return total + removeUnreferenced(root, batch);
+    }
+
+    private int removeUnreferenced(Path root, List<Path> files) {
+        if (files.isEmpty()) {
+            return 0;
+        }
+        List<String> paths = new ArrayList<>(files.size());
+        List<String> urls = new ArrayList<>(files.size());
+        for (Path file : files) {
+            String path = root.relativize(file).toString().replace('\\', '/');
+            paths.add(path);
+            urls.add(MediaStore.URL_PREFIX + path);
+        }
+        Set<String> referenced = new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                "SELECT path FROM media_objects WHERE path IN (:paths)",
+                new MapSqlParameterSource("paths", paths), String.class));
+        Set<String> legacy = new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                "SELECT media_url FROM posts WHERE media_url IN (:urls)",
+                new MapSqlParameterSource("urls", urls), String.class));
+
+        int count = 0;
+        for (int i = 0; i < files.size(); i++) {
+            if (referenced.contains(paths.get(i)) || legacy.contains(urls.get(i))) {
+                continue;
+            }
+            // Re-checked under the file's lock, in case an upload of the same content claimed it meanwhile
+            if (mediaStore.deleteIfUnreferenced(files.get(i))) {
+                removed.increment();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isOlder(Path file, Instant cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            return false; // Gone meanwhile
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com._blog._blog.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Content-addressed storage for uploaded media.
+ *
+ * An upload is streamed to a temporary file while its SHA-256 is computed, then moved to
+ * uploads/ab/cd/<hash>.<ext> (sharded on the first two bytes of the hash, so no directory grows
+ * past a few thousand files). Identical uploads share one file: media_objects counts the posts
+ * that reference it, and the file is deleted when the last reference is released.
+ *
+ * Storing and deleting the file of one hash are serialized with a Postgres advisory lock, so a
+ * release that drops the last reference cannot delete a file that a concurrent upload of the
+ * same content has just claimed.
+ */
+@Service
+public class MediaStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaStore.class);
+
+    public static final String UPLOAD_DIR = "uploads/";
+    public static final String URL_PREFIX = "/uploads/";
+
+    private static final String ACQUIRE =
+            "WITH up AS (INSERT INTO media_objects (hash, path, size_bytes, ref_count, created_at) " +
+            "VALUES (:hash, :path, :size, 1, :now) " +
+            "ON CONFLICT (hash) DO UPDATE SET ref_count = media_objects.ref_count + 1 RETURNING path) " +
+            "SELECT path FROM up";
+
+    private static final String DECREMENT =
+            "WITH dec AS (UPDATE media_objects SET ref_count = ref_count - 1 WHERE path = :path RETURNING ref_count) " +
+            "SELECT ref_count FROM dec";
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    // Releases run after the post's own transaction has committed, so they need one of their own
+    private final TransactionTemplate newTransaction;
+
+    private final Counter storedNew;
+    private final Counter storedDuplicate;
+
+    public MediaStore(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.storedNew = Counter.builder("media.store.uploads").tag("result", "new")
+                .description("Uploads stored as a new file")
+                .register(meterRegistry);
+        this.storedDuplicate = Counter.builder("media.store.uploads").tag("result", "duplicate")
+                .description("Uploads whose content was already stored")
+                .register(meterRegistry);
+    }
+
+    // Copy the upload to a temporary file and hash it. This is the slow part of storing media,
+    // so it runs before any transaction; the caller must discard() the result when done.
+    public StagedMedia stage(MultipartFile file) throws IOException {
+        return stage(file.getInputStream(), file.getOriginalFilename());
+    }
+
+    // Same for content from a stream; the extension of filename is kept
+    public StagedMedia stage(InputStream content, String filename) throws IOException {
+        Path temp = Files.createTempFile(tempDir(), "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(content, digest)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return new StagedMedia(temp, HexFormat.of().formatHex(digest.digest()), filename);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    // Delete the staged file if it was not adopted
+    public void discard(StagedMedia staged) {
+        if (staged == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(staged.getFile());
+        } catch (IOException e) {
+            logger.warn("Failed to delete staged file {}: {}", staged.getFile(), e.getMessage());
+        }
+    }
+
+    // Take a reference on staged media and move the file into the store (a rename, no copy);
+    // returns its media URL. The reference is part of the caller's transaction: if that rolls
+    // back, a file moved in by this call is deleted again unless another post references it.
+    @Transactional
+    public String adopt(StagedMedia staged) throws IOException {
+        Path root = Paths.get(UPLOAD_DIR);
+        String hash = staged.getHash();
+        lock(hash);
+        // Content stored before under another extension keeps its original path
+        String path = namedParameterJdbcTemplate.queryForObject(ACQUIRE, new MapSqlParameterSource()
+                .addValue("hash", hash)
+                .addValue("path", hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + extension(staged.getFilename()))
+                .addValue("size", Files.size(staged.getFile()))
+                .addValue("now", LocalDateTime.now()), String.class);
+
+        Path target = root.resolve(path);
+        if (Files.exists(target)) {
+            Files.delete(staged.getFile());
+            storedDuplicate.increment();
+        } else {
+            Files.createDirectories(target.getParent());
+            Files.move(staged.getFile(), target, StandardCopyOption.ATOMIC_MOVE);
+            storedNew.increment();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        deleteIfUnreferenced(target.toAbsolutePath());
+                    }
+                }
+            });
+        }
+        return URL_PREFIX + path;
+    }
+
+    // Scratch space for files on their way into the store; never served
+    public Path tempDir() throws IOException {
+        return Files.createDirectories(Paths.get(UPLOAD_DIR).resolve(".tmp"));
+    }
+
+    // Drop one reference to the media and delete the file if it was the last one.
+    // Files stored before the media store existed have no row and are deleted directly.
+    public void release(String mediaUrl) {
+        Path file = resolve(mediaUrl);
+        if (file == null) {
+            return;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource("path", mediaUrl.substring(URL_PREFIX.length()));
+
+        Boolean stillReferenced = newTransaction.execute(status -> {
+            List<Long> counts = namedParameterJdbcTemplate.queryForList(DECREMENT, params, Long.class);
+            if (counts.isEmpty() || counts.get(0) <= 0) {
+                namedParameterJdbcTemplate.update("DELETE FROM media_objects WHERE path = :path AND ref_count <= 0", params);
+                return false;
+            }
+            return true;
+        });
+        if (stillReferenced) {
+            return;
+        }
+
+        // The row may have been re-created by an upload of the same content since then
+        deleteIfUnreferenced(file);
+    }
+
+    // Delete a stored file unless a media_objects row references it; returns true if deleted
+    public boolean deleteIfUnreferenced(Path file) {
+        Path root = Paths.get(UPLOAD_DIR).toAbsolutePath().normalize();
+        MapSqlParameterSource params = new MapSqlParameterSource("path",
+                root.relativize(file.toAbsolutePath().normalize()).toString().replace('\\', '/'));
+        return newTransaction.execute(status -> {
+            lock(hashOf(file));
+            Long rows = namedParameterJdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM media_objects WHERE path = :path", params, Long.class);
+            if (rows > 0) {
+                return false;
+            }
+            try {
+                return Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Failed to delete media file {}: {}", file, e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    // Release once the current transaction commits, e.g. for media replaced by a post update
+    public void releaseAfterCommit(String mediaUrl) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            release(mediaUrl);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                release(mediaUrl);
+            }
+        });
+    }
+
+    // The file behind a media URL, or null if the URL does not point into the upload directory
+    public Path resolve(String mediaUrl) {
+        if (mediaUrl == null || !mediaUrl.startsWith(URL_PREFIX)) {
+            return null;
+        }
+        Path root = Paths.get(UPLOAD_DIR).toAbsolutePath().normalize();
+        Path file = root.resolve(mediaUrl.substring(URL_PREFIX.length())).normalize();
+        return file.startsWith(root) && !file.equals(root) ? file : null;
+    }
+
+    private void lock(String key) {
+        namedParameterJdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(hashtext(:key))",
+                new MapSqlParameterSource("key", key));
+    }
+
+    // The content hash is the file name without its extension
+    private static String hashOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    // Keep a short alphanumeric extension so clients can still tell images from videos
+    private static String extension(String filename) {
+        if (filename == null || filename.lastIndexOf('.') < 0) {
+            return "";
+        }
+        String ext = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return ext.matches("[a-z0-9]{1,10}") ? "." + ext : "";
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
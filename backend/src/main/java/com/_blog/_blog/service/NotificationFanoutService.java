@@ -0,0 +1,349 @@
+package com._blog._blog.service;
+
+import com._blog._blog.entity.FanoutJob;
+import com._blog._blog.repository.FanoutJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes NEW_POST notifications for an author's subscribers in the background.
+ * Every published post gets a fanout_jobs row in its own transaction and is queued on a bounded
+ * queue after commit; worker threads page through the subscribers and insert one batch of
+ * notifications per statement, one short transaction per batch that also records the progress.
+ * A failed batch is retried with backoff and resumes where it left off. Jobs that did not fit in
+ * the queue, or were interrupted by a restart, are picked up from the table by a poller; the
+ * publishing request never does the fan-out itself.
+ * Once a batch commits, its notifications are pushed to subscribers with an open stream
+ * (see NotificationStreamService). In lazy mode nothing is written, only pushed.
+ */
+@Service
+public class NotificationFanoutService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationFanoutService.class);
+
+    // Notifications for the next batch of subscribers, counted on their unread counters in the same
+    // statement; returns (notification id, subscriber id) rows. Nothing is written once the post is
+    // tombstoned, and the share lock makes a concurrent soft delete wait for this batch, so that
+    // it takes the batch's notifications off the counters too
+    private static final String INSERT_BATCH =
+            "WITH live_post AS (SELECT id FROM posts WHERE id = ? AND deleted_at IS NULL FOR SHARE), " +
+            "ins AS (INSERT INTO notifications (user_id, actor_id, post_id, is_read, created_at, notification_type, message) " +
+            "SELECT s.subscriber_id, ?, live_post.id, false, ?, 'NEW_POST', ? FROM subscriptions s CROSS JOIN live_post " +
+            "WHERE s.subscribed_to_id = ? AND s.subscriber_id > ? ORDER BY s.subscriber_id LIMIT ? " +
+            "RETURNING id, user_id), " +
+            "counts AS (UPDATE users u SET unread_notification_count = u.unread_notification_count + 1 " +
+            "FROM ins WHERE u.id = ins.user_id) " +
+            "SELECT id, user_id FROM ins";
+
+    private static final String SELECT_PROGRESS = "SELECT last_subscriber_id FROM fanout_jobs WHERE post_id = ?";
+    private static final String UPDATE_PROGRESS = "UPDATE fanout_jobs SET last_subscriber_id = ? WHERE post_id = ?";
+    private static final String DELETE_JOB = "DELETE FROM fanout_jobs WHERE post_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FanoutJobRepository fanoutJobRepository;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private NotificationStreamService notificationStreamService;
+
+    @Autowired
+    private FollowGraph followGraph;
+
+    @Autowired
+    private UnreadNotificationCounter unreadNotificationCounter;
+
+    @Value("${app.notifications.fanout.workers:2}")
+    private int workerCount;
+
+    @Value("${app.notifications.fanout.batchSize:500}")
+    private int batchSize;
+
+    @Value("${app.notifications.fanout.maxAttempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.notifications.fanout.retryBackoffMs:1000}")
+    private long retryBackoffMs;
+
+    private final BlockingQueue<FanoutTask> queue;
+    // Posts whose fan-out is queued or running in this instance, so the poller does not queue them twice
+    private final Set<Long> claimed = ConcurrentHashMap.newKeySet();
+    private final TransactionTemplate transactionTemplate;
+    private ExecutorService workers;
+
+    private final Counter written;
+    private final Counter retries;
+    private final Counter failures;
+    private final Counter deferred;
+    private final Timer lag;
+
+    public NotificationFanoutService(
+            @Value("${app.notifications.fanout.queueCapacity:10000}") int queueCapacity,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Always a fresh transaction, also when running inline from an after-commit callback
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        Gauge.builder("notifications.fanout.queue.depth", queue, BlockingQueue::size)
+                .description("Published posts waiting for notification fan-out")
+                .register(meterRegistry);
+        this.written = Counter.builder("notifications.fanout.written")
+                .description("NEW_POST notifications written").register(meterRegistry);
+        this.retries = Counter.builder("notifications.fanout.retries")
+                .description("Fan-out batches retried after a failure").register(meterRegistry);
+        this.failures = Counter.builder("notifications.fanout.failures")
+                .description("Fan-out tasks abandoned after exhausting retries").register(meterRegistry);
+        this.deferred = Counter.builder("notifications.fanout.deferred")
+                .description("Fan-out tasks left to the poller because the queue was full").register(meterRegistry);
+        this.lag = Timer.builder("notifications.fanout.lag")
+                .description("Time from post commit until all its notifications are written").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "notification-fanout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::workLoop);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    // Record the fan-out in the publishing transaction, so a committed post always has its job
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void recordFanout(PostPublishedEvent event) {
+        if (!notificationService.isLazyNewPosts()) {
+            fanoutJobRepository.save(new FanoutJob(event));
+        }
+    }
+
+    // Queue the fan-out once the post is committed; if the queue is full the job waits in the
+    // table for the poller (backpressure without doing the fan-out on the request thread)
+    @TransactionalEventListener
+    public void onPostPublished(PostPublishedEvent event) {
+        if (notificationService.isLazyNewPosts()) {
+            // NEW_POST notifications are computed at read time, only connected subscribers hear now
+            pushLazy(event);
+            return;
+        }
+        if (!enqueue(new FanoutTask(event))) {
+            deferred.increment();
+        }
+    }
+
+    // Queue persisted jobs that are not queued yet: after a restart, or once the queue has room again
+    @Scheduled(fixedDelayString = "${app.notifications.fanout.pollMs:5000}")
+    public void pollJobs() {
+        int room = queue.remainingCapacity();
+        if (room == 0 || notificationService.isLazyNewPosts()) {
+            return;
+        }
+        for (FanoutJob job : fanoutJobRepository.findAllByOrderByIdAsc(PageRequest.of(0, room + claimed.size()))) {
+            if (!claimed.contains(job.getPostId()) && !enqueue(new FanoutTask(job.toEvent()))) {
+                return;
+            }
+        }
+    }
+
+    private boolean enqueue(FanoutTask task) {
+        if (!claimed.add(task.event.getPostId())) {
+            return true; // Already queued or running
+        }
+        if (!queue.offer(task)) {
+            claimed.remove(task.event.getPostId());
+            return false;
+        }
+        return true;
+    }
+
+    private void workLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                process(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                logger.error("Notification fan-out worker error", e);
+            }
+        }
+    }
+
+    private void process(FanoutTask task) {
+        try {
+            fanOut(task);
+        } finally {
+            claimed.remove(task.event.getPostId());
+        }
+    }
+
+    private void fanOut(FanoutTask task) {
+        PostPublishedEvent event = task.event;
+        // Re-read the progress now that the job is claimed: the poller may have queued a job
+        // that another worker finished (and deleted) after the poller listed it
+        List<Long> progress = jdbcTemplate.queryForList(SELECT_PROGRESS, Long.class, event.getPostId());
+        if (progress.isEmpty()) {
+            return;
+        }
+        task.lastSubscriberId = progress.get(0);
+        String message = NotificationService.newPostMessage(event.getAuthorUsername(), event.getTitle());
+        Timestamp createdAt = Timestamp.valueOf(event.getCreatedAt());
+
+        int attempt = 1;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<long[]> batch = transactionTemplate.execute(status -> writeBatch(task, message, createdAt));
+                if (batch == null || batch.isEmpty()) {
+                    finish(task);
+                    return;
+                }
+                // Only advance the resume point once the batch has committed
+                for (long[] row : batch) {
+                    task.lastSubscriberId = Math.max(task.lastSubscriberId, row[1]);
+                }
+                written.increment(batch.size());
+                List<Long> subscriberIds = new ArrayList<>(batch.size());
+                for (long[] row : batch) {
+                    subscriberIds.add(row[1]);
+                }
+                unreadNotificationCounter.invalidate(subscriberIds);
+                pushBatch(event, batch);
+                if (batch.size() < batchSize) {
+                    finish(task);
+                    return;
+                }
+                attempt = 1;
+            } catch (DataIntegrityViolationException e) {
+                // The post (or author) was deleted before we got to it, nothing left to notify about
+                logger.info("Dropping fan-out for post {}: {}", event.getPostId(), e.getMostSpecificCause().getMessage());
+                jdbcTemplate.update(DELETE_JOB, event.getPostId());
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    failures.increment();
+                    logger.error("Giving up notification fan-out for post {} after {} attempts", event.getPostId(), attempt, e);
+                    jdbcTemplate.update(DELETE_JOB, event.getPostId());
+                    return;
+                }
+                retries.increment();
+                sleep(retryBackoffMs * attempt);
+                attempt++;
+            }
+        }
+    }
+
+    // Insert notifications for the next batch of subscribers and record the progress in the same
+    // transaction; returns (notification id, subscriber id) rows
+    private List<long[]> writeBatch(FanoutTask task, String message, Timestamp createdAt) {
+        PostPublishedEvent event = task.event;
+        List<long[]> batch = jdbcTemplate.query(INSERT_BATCH, (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2)},
+                event.getPostId(), event.getAuthorId(), createdAt, message,
+                event.getAuthorId(), task.lastSubscriberId, batchSize);
+        long lastSubscriberId = task.lastSubscriberId;
+        for (long[] row : batch) {
+            lastSubscriberId = Math.max(lastSubscriberId, row[1]);
+        }
+        if (lastSubscriberId != task.lastSubscriberId) {
+            jdbcTemplate.update(UPDATE_PROGRESS, lastSubscriberId, event.getPostId());
+        }
+        return batch;
+    }
+
+    private void finish(FanoutTask task) {
+        jdbcTemplate.update(DELETE_JOB, task.event.getPostId());
+        lag.record(Duration.ofNanos(System.nanoTime() - task.enqueuedAt));
+    }
+
+    // Push committed notifications to the subscribers that have a stream open
+    private void pushBatch(PostPublishedEvent event, List<long[]> batch) {
+        for (long[] row : batch) {
+            if (notificationStreamService.isConnected(row[1])) {
+                notificationStreamService.push(row[1], NotificationStreamService.NOTIFICATION, notificationService.newPostDTO(
+                        row[0], event.getPostId(), event.getAuthorUsername(), event.getTitle(), event.getCreatedAt()));
+            }
+        }
+    }
+
+    // Lazy mode: the notification id is the negated post id (see NotificationService).
+    // Walk whichever is smaller, the author's followers or the connected users
+    private void pushLazy(PostPublishedEvent event) {
+        Map<String, Object> dto = notificationService.newPostDTO(-event.getPostId(), event.getPostId(),
+                event.getAuthorUsername(), event.getTitle(), event.getCreatedAt());
+        long[] followers = followGraph.followers(event.getAuthorId());
+        Set<Long> connected = notificationStreamService.connectedUserIds();
+        if (followers.length <= connected.size()) {
+            for (long subscriberId : followers) {
+                if (connected.contains(subscriberId)) {
+                    notificationStreamService.push(subscriberId, NotificationStreamService.NOTIFICATION, dto);
+                }
+            }
+        } else {
+            for (Long userId : connected) {
+                if (followGraph.isFollowing(userId, event.getAuthorId())) {
+                    notificationStreamService.push(userId, NotificationStreamService.NOTIFICATION, dto);
+                }
+            }
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class FanoutTask {
+        private final PostPublishedEvent event;
+        private final long enqueuedAt = System.nanoTime();
+        private long lastSubscriberId = 0; // Read from the job row when the fan-out starts
+
+        private FanoutTask(PostPublishedEvent event) {
+            this.event = event;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com._blog._blog.service;
+
+import com._blog._blog.dto.NotificationView;
+import com._blog._blog.dto.PageCursor;
+import com._blog._blog.entity.Notification;
+import com._blog._blog.entity.Post;
+import com._blog._blog.entity.User;
+import com._blog._blog.repository.NotificationRepository;
+import com._blog._blog.repository.PostRepository;
+import com._blog._blog.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and acknowledges a user's notifications.
+ *
+ * In "stored" mode (the default) every NEW_POST notification is a row written by the fan-out.
+ * In "lazy" mode NEW_POST notifications are not stored: they are computed at read time from the
+ * user's subscriptions and notification watermark, and merged with the stored notifications.
+ * Lazy NEW_POST notifications use the negated post id as their id. The history only lists stored
+ * rows, so a lazy one appears there once marked as read (as its read marker).
+ *
+ * Every change to the unread state of stored notifications also adjusts the user's
+ * unread_notification_count in the same transaction (see UnreadNotificationCounter).
+ */
+@Service
+public class NotificationService {
+
+    public static final String NEW_POST = "NEW_POST";
+
+    private static final LocalDateTime NEVER = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UnreadNotificationCounter unreadNotificationCounter;
+
+    @Value("${app.notifications.newPostMode:stored}")
+    private String newPostMode;
+
+    // Maximum number of computed NEW_POST notifications returned per read
+    @Value("${app.notifications.lazyLimit:100}")
+    private int lazyLimit;
+
+    public boolean isLazyNewPosts() {
+        return "lazy".equalsIgnoreCase(newPostMode);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getUnread(User user) {
+        if (!isLazyNewPosts()) {
+            List<Map<String, Object>> dtos = new ArrayList<>();
+            for (NotificationView notification : notificationRepository.findUnread(user.getId())) {
+                dtos.add(toDTO(notification));
+            }
+            return dtos;
+        }
+
+        LocalDateTime since = user.getNotificationsSeenAt() != null ? user.getNotificationsSeenAt() : NEVER;
+        List<NotificationView> stored = notificationRepository.findUnreadSince(user.getId(), since);
+        List<Post> unseenPosts = postRepository.findUnseenFromSubscriptions(user.getId(), since, PageRequest.of(0, lazyLimit));
+
+        // Both lists are newest first: merge them by createdAt
+        List<Map<String, Object>> merged = new ArrayList<>(stored.size() + unseenPosts.size());
+        int i = 0;
+        int j = 0;
+        while (i < stored.size() || j < unseenPosts.size()) {
+            boolean takeStored = j >= unseenPosts.size()
+                    || (i < stored.size() && !stored.get(i).getCreatedAt().isBefore(unseenPosts.get(j).getCreatedAt()));
+            merged.add(takeStored ? toDTO(stored.get(i++)) : newPostDTO(unseenPosts.get(j++)));
+        }
+        return merged;
+    }
+
+    // Unread count for the notification bell, from the cached counter; in lazy mode plus the
+    // computed NEW_POST notifications, counted up to app.notifications.lazyLimit like getUnread
+    public long getUnreadCount(User user) {
+        long count = unreadNotificationCounter.get(user.getId());
+        if (isLazyNewPosts()) {
+            LocalDateTime since = user.getNotificationsSeenAt() != null ? user.getNotificationsSeenAt() : NEVER;
+            count += postRepository.countUnseenFromSubscriptions(user.getId(), since, lazyLimit);
+        }
+        return count;
+    }
+
+    // One page of the history, newest first; returns pageSize + 1 rows when there is a next page
+    @Transactional(readOnly = true)
+    public List<NotificationView> getPage(User user, PageCursor cursor, int pageSize) {
+        PageRequest page = PageRequest.of(0, pageSize + 1);
+        if (cursor == null) {
+            return notificationRepository.findPage(user.getId(), page);
+        }
+        return notificationRepository.findPageBefore(user.getId(), cursor.getCreatedAt(), cursor.getId(), page);
+    }
+
+    @Transactional
+    public void markAsRead(User user, Long id) {
+        if (id < 0 && isLazyNewPosts()) {
+            // Computed NEW_POST notification: store a read marker so it is not computed again
+            Post post = postRepository.findActiveById(-id).orElse(null);
+            if (post != null && !notificationRepository.existsByUserAndPostAndNotificationType(user, post, NEW_POST)) {
+                Notification marker = new Notification(user, post.getUser(), post, NEW_POST, newPostMessage(post));
+                marker.setIsRead(true);
+                notificationRepository.save(marker);
+            }
+            return;
+        }
+        if (notificationRepository.markAsRead(id, user.getId()) > 0) {
+            userRepository.adjustUnreadNotificationCount(user.getId(), -1);
+            unreadNotificationCounter.invalidateAfterCommit(List.of(user.getId()));
+        }
+    }
+
+    @Transactional
+    public void markAllAsRead(User user) {
+        if (isLazyNewPosts()) {
+            // A single watermark update replaces the mass UPDATE over NEW_POST notification rows.
+            // Stored unread rows are rare in this mode, so they are still marked to keep the counter exact
+            userRepository.updateNotificationsSeenAt(user.getId(), LocalDateTime.now());
+        }
+        int marked = notificationRepository.markAllAsRead(user.getId());
+        if (marked > 0) {
+            userRepository.adjustUnreadNotificationCount(user.getId(), -marked);
+            unreadNotificationCounter.invalidateAfterCommit(List.of(user.getId()));
+        }
+    }
+
+    public Map<String, Object> toDTO(NotificationView notification) {
+        Map<String, Object> dto = new HashMap<>();
+        dto.put("id", notification.getId());
+        dto.put("type", notification.getType());
+        dto.put("message", notification.getMessage());
+        dto.put("read", notification.getRead());
+        dto.put("createdAt", notification.getCreatedAt());
+
+        if (notification.getActorUsername() != null) {
+            dto.put("actorUsername", notification.getActorUsername());
+        }
+
+        if (notification.getPostId() != null) {
+            dto.put("postId", notification.getPostId());
+            dto.put("postTitle", notification.getPostTitle());
+        }
+
+        return dto;
+    }
+
+    private Map<String, Object> newPostDTO(Post post) {
+        return newPostDTO(-post.getId(), post.getId(), post.getUser().getUsername(), post.getTitle(), post.getCreatedAt());
+    }
+
+    // Unread NEW_POST notification as the client sees it, also pushed over the notification stream
+    public Map<String, Object> newPostDTO(Long id, Long postId, String authorUsername, String title, LocalDateTime createdAt) {
+        Map<String, Object> dto = new HashMap<>();
+        dto.put("id", id);
+        dto.put("type", NEW_POST);
+        dto.put("message", newPostMessage(authorUsername, title));
+        dto.put("read", false);
+        dto.put("createdAt", createdAt);
+        dto.put("actorUsername", authorUsername);
+        dto.put("postId", postId);
+        dto.put("postTitle", title);
+        return dto;
+    }
+
+    private String newPostMessage(Post post) {
+        return newPostMessage(post.getUser().getUsername(), post.getTitle());
+    }
+
+    public static String newPostMessage(String authorUsername, String title) {
+        return authorUsername + " published a new post: " + title;
+    }
+}
@@ -0,0 +1,318 @@
+package com._blog._blog.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes notification deltas to the open Server-Sent Events connections of each user.
+ *
+ * Every event gets an id from one increasing sequence (seeded from the clock at startup, so ids
+ * keep increasing across restarts). The last app.notifications.stream.replaySize events of each
+ * recently connected user are kept, so a client reconnecting with Last-Event-ID gets what it
+ * missed. When that cannot be guaranteed (the events were dropped from the buffer, or sent before
+ * a restart) the client is told to "resync", i.e. reload its notifications once.
+ *
+ * Sends run on app.notifications.stream.senders threads, each with a bounded queue, so a slow
+ * client never blocks the request or fan-out worker that pushed the event. A user's events always
+ * go to the same sender and so stay in order. When that sender's queue is full the event is
+ * counted as dropped; the client still sees the notification when it next loads the list.
+ *
+ * Nothing here touches the database: an open stream must not pin a pooled connection.
+ */
+@Service
+public class NotificationStreamService {
+
+    public static final String NOTIFICATION = "notification";
+    public static final String RESYNC = "resync";
+
+    @Value("${app.notifications.stream.timeoutMs:1800000}")
+    private long timeoutMs;
+
+    @Value("${app.notifications.stream.maxConnectionsPerUser:5}")
+    private int maxConnectionsPerUser;
+
+    @Value("${app.notifications.stream.replaySize:50}")
+    private int replaySize;
+
+    @Value("${app.notifications.stream.maxReplayUsers:10000}")
+    private int maxReplayUsers;
+
+    private final Map<Long, CopyOnWriteArrayList<SseEmitter>> emitters = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final long firstSequence = System.currentTimeMillis() * 1000;
+    private final AtomicLong sequence = new AtomicLong(firstSequence);
+
+    // Access-ordered, evicted LRU past maxReplayUsers; guarded by itself
+    private final LinkedHashMap<Long, ReplayBuffer> replay = new LinkedHashMap<>(16, 0.75f, true);
+    // Highest event id lost by evicting a whole buffer
+    private long evictedUpTo = 0;
+
+    private final ThreadPoolExecutor[] senders;
+
+    private final Counter pushed;
+    private final Counter dropped;
+
+    private static class StreamEvent {
+        private final long id;
+        private final String name;
+        private final Object data;
+
+        private StreamEvent(long id, String name, Object data) {
+            this.id = id;
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    private static class ReplayBuffer {
+        private final ArrayDeque<StreamEvent> events = new ArrayDeque<>();
+        private long truncatedUpTo = 0; // Highest event id dropped from this buffer
+    }
+
+    public NotificationStreamService(
+            @Value("${app.notifications.stream.senders:2}") int senderCount,
+            @Value("${app.notifications.stream.sendQueueCapacity:10000}") int sendQueueCapacity,
+            MeterRegistry meterRegistry) {
+        this.senders = new ThreadPoolExecutor[Math.max(senderCount, 1)];
+        for (int i = 0; i < senders.length; i++) {
+            senders[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(sendQueueCapacity / senders.length, 1)), runnable -> {
+                        Thread thread = new Thread(runnable, "notification-stream-sender");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+
+        Gauge.builder("notifications.stream.send.queue.depth", senders,
+                        executors -> Arrays.stream(executors).mapToInt(executor -> executor.getQueue().size()).sum())
+                .description("Notification events waiting to be sent to an open stream")
+                .register(meterRegistry);
+        Gauge.builder("notifications.stream.connections", connections, AtomicInteger::get)
+                .description("Open notification streams")
+                .register(meterRegistry);
+        this.pushed = Counter.builder("notifications.stream.events").tag("result", "sent")
+                .description("Notification events sent to an open stream")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("notifications.stream.events").tag("result", "dropped")
+                .description("Notification events not sent because the stream had failed or the send queue was full")
+                .register(meterRegistry);
+    }
+
+    // Open a stream for the user, replaying what it missed after lastEventId (null for a fresh client).
+    // The stream is registered before the replay is read, so an event pushed meanwhile may arrive
+    // twice but is never lost; clients ignore notifications they already have.
+    public SseEmitter connect(Long userId, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        // Added inside compute, so a concurrent remove() cannot drop the list we add to
+        CopyOnWriteArrayList<SseEmitter> userEmitters = emitters.compute(userId, (id, current) -> {
+            CopyOnWriteArrayList<SseEmitter> list = current != null ? current : new CopyOnWriteArrayList<>();
+            list.add(emitter);
+            return list;
+        });
+        connections.incrementAndGet();
+        emitter.onCompletion(() -> remove(userId, emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> remove(userId, emitter));
+
+        List<StreamEvent> missed = new ArrayList<>();
+        boolean resync;
+        synchronized (replay) {
+            ReplayBuffer buffer = replay.computeIfAbsent(userId, id -> new ReplayBuffer());
+            evictReplayBuffers();
+            resync = needsResync(buffer, lastEventId);
+            if (!resync && lastEventId != null && !lastEventId.isBlank()) {
+                long after = Long.parseLong(lastEventId.trim());
+                for (StreamEvent event : buffer.events) {
+                    if (event.id > after) {
+                        missed.add(event);
+                    }
+                }
+            }
+        }
+
+        // Too many tabs: the oldest stream goes, its client reconnects if it is still open
+        if (userEmitters.size() > maxConnectionsPerUser) {
+            userEmitters.get(0).complete();
+        }
+
+        try {
+            if (resync) {
+                emitter.send(SseEmitter.event().id(Long.toString(sequence.get())).name(RESYNC).data(""));
+            }
+            for (StreamEvent event : missed) {
+                emitter.send(toSse(event));
+                pushed.increment();
+            }
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (ThreadPoolExecutor sender : senders) {
+            sender.shutdownNow();
+        }
+    }
+
+    // Push one event to the user's open streams; users without a recent stream are skipped,
+    // they read their notifications when they next connect. Returns once the event is buffered,
+    // the sending itself happens on the user's sender thread
+    public void push(Long userId, String name, Object data) {
+        StreamEvent event;
+        synchronized (replay) {
+            ReplayBuffer buffer = replay.get(userId);
+            if (buffer == null) {
+                if (!emitters.containsKey(userId)) {
+                    return;
+                }
+                buffer = new ReplayBuffer();
+                replay.put(userId, buffer);
+                evictReplayBuffers();
+            }
+            event = new StreamEvent(sequence.incrementAndGet(), name, data);
+            buffer.events.addLast(event);
+            if (buffer.events.size() > replaySize) {
+                buffer.truncatedUpTo = buffer.events.removeFirst().id;
+            }
+        }
+
+        try {
+            sender(userId).execute(() -> send(userId, event));
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+        }
+    }
+
+    private void send(Long userId, StreamEvent event) {
+        // Read after buffering, so a stream opened meanwhile gets the event from one or the other
+        CopyOnWriteArrayList<SseEmitter> userEmitters = emitters.get(userId);
+        if (userEmitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : userEmitters) {
+            try {
+                emitter.send(toSse(event));
+                pushed.increment();
+            } catch (IOException | IllegalStateException e) {
+                dropped.increment();
+                emitter.completeWithError(e);
+                remove(userId, emitter);
+            }
+        }
+    }
+
+    public boolean isConnected(Long userId) {
+        return emitters.containsKey(userId);
+    }
+
+    // Users with at least one open stream
+    public Set<Long> connectedUserIds() {
+        return emitters.keySet();
+    }
+
+    // Comment lines keep proxies from closing idle streams and reveal dead connections. Written on
+    // the users' sender threads like events, so a dead client cannot stall the shared scheduler;
+    // a user whose sender is backed up skips this beat, it has events queued anyway
+    @Scheduled(fixedDelayString = "${app.notifications.stream.heartbeatMs:25000}")
+    public void heartbeat() {
+        for (Long userId : emitters.keySet()) {
+            try {
+                sender(userId).execute(() -> sendHeartbeat(userId));
+            } catch (RejectedExecutionException e) {
+                // Skipped, see above
+            }
+        }
+    }
+
+    private void sendHeartbeat(Long userId) {
+        CopyOnWriteArrayList<SseEmitter> userEmitters = emitters.get(userId);
+        if (userEmitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : userEmitters) {
+            try {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+                remove(userId, emitter);
+            }
+        }
+    }
+
+    private boolean needsResync(ReplayBuffer buffer, String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return false; // Fresh client, it loads its notifications itself
+        }
+        long after;
+        try {
+            after = Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return true;
+        }
+        // Anything the client may have missed must still be buffered
+        return after < firstSequence || after > sequence.get()
+                || after < buffer.truncatedUpTo || after < evictedUpTo;
+    }
+
+    // Called with the replay lock held
+    private void evictReplayBuffers() {
+        Iterator<Map.Entry<Long, ReplayBuffer>> iterator = replay.entrySet().iterator();
+        while (replay.size() > maxReplayUsers && iterator.hasNext()) {
+            Map.Entry<Long, ReplayBuffer> eldest = iterator.next();
+            if (emitters.containsKey(eldest.getKey())) {
+                continue; // Keep the buffers of connected users
+            }
+            ReplayBuffer buffer = eldest.getValue();
+            if (!buffer.events.isEmpty()) {
+                evictedUpTo = Math.max(evictedUpTo, buffer.events.getLast().id);
+            }
+            evictedUpTo = Math.max(evictedUpTo, buffer.truncatedUpTo);
+            iterator.remove();
+        }
+    }
+
+    private void remove(Long userId, SseEmitter emitter) {
+        emitters.computeIfPresent(userId, (id, userEmitters) -> {
+            if (userEmitters.remove(emitter)) {
+                connections.decrementAndGet();
+            }
+            return userEmitters.isEmpty() ? null : userEmitters;
+        });
+    }
+
+    // The sender of a user: always the same one, so the user's writes stay in order
+    private ThreadPoolExecutor sender(Long userId) {
+        return senders[Math.floorMod(userId.hashCode(), senders.length)];
+    }
+
+    private static SseEmitter.SseEventBuilder toSse(StreamEvent event) {
+        return SseEmitter.event().id(Long.toString(event.id)).name(event.name).data(event.data);
+    }
+}
@@ -0,0 +1,14 @@
+package com._blog._blog.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when a post gets new media; listeners run after the post's transaction commits.
+ */
+@Getter
+@AllArgsConstructor
+public class PostMediaChangedEvent {
+    private Long postId;
+    private String mediaUrl;
+}
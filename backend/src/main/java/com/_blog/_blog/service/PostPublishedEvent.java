@@ -0,0 +1,19 @@
+package com._blog._blog.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published when a new post is created; listeners run after the post's transaction commits.
+ */
+@Getter
+@AllArgsConstructor
+public class PostPublishedEvent {
+    private Long postId;
+    private Long authorId;
+    private String authorUsername;
+    private String title;
+    private LocalDateTime createdAt;
+}
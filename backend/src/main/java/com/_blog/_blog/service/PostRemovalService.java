@@ -0,0 +1,97 @@
+package com._blog._blog.service;
+
+import com._blog._blog.entity.Post;
+import com._blog._blog.repository.CommentRepository;
+import com._blog._blog.repository.LikeRepository;
+import com._blog._blog.repository.NotificationRepository;
+import com._blog._blog.repository.PostRepository;
+import com._blog._blog.repository.ReportRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * Deletes a post and everything that references it.
+ *
+ * A delete request only tombstones the post (deleted_at), takes it off the timelines and takes its
+ * notifications off the unread counters; every read query skips tombstoned posts. PostSweeper later removes the row for
+ * good: each child table is cleared with one bulk DELETE inside a single transaction, so no child
+ * entity is ever loaded. The media file and the in-memory like index are only touched once the
+ * deletion has committed.
+ */
+@Service
+public class PostRemovalService {
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private LikeRepository likeRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private UnreadNotificationCounter unreadNotificationCounter;
+
+    @Autowired
+    private TimelineService timelineService;
+
+    @Autowired
+    private LikeIndex likeIndex;
+
+    @Autowired
+    private MediaStore mediaStore;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Returns false when the post was already deleted
+    @Transactional
+    public boolean softDelete(Post post) {
+        if (postRepository.markDeleted(post.getId(), LocalDateTime.now()) == 0) {
+            return false;
+        }
+        // Its notifications are hidden from now on, so they must not stay on the unread counters
+        // until the sweeper gets to the post
+        unreadNotificationCounter.invalidateAfterCommit(notificationRepository.markAllAsReadByPostId(post.getId()));
+        timelineService.onPostRemoved(post.getId());
+        return true;
+    }
+
+    @Transactional
+    public void removePost(Long postId, String mediaUrl, String mediaVariants) {
+        likeRepository.deleteAllByPostId(postId);
+        commentRepository.deleteAllByPostId(postId);
+        unreadNotificationCounter.invalidateAfterCommit(notificationRepository.deleteAllByPostId(postId));
+        reportRepository.deleteAllByPostId(postId);
+        timelineService.onPostRemoved(postId);
+        postRepository.hardDeleteById(postId);
+
+        eventPublisher.publishEvent(new PostRemovedEvent(postId, mediaUrl, mediaVariants));
+    }
+
+    @TransactionalEventListener
+    public void onPostRemoved(PostRemovedEvent event) {
+        likeIndex.evictPost(event.getPostId());
+
+        // The file itself is only deleted if no other post shares it
+        if (event.getMediaUrl() != null && !event.getMediaUrl().isEmpty()) {
+            mediaStore.release(event.getMediaUrl());
+        }
+        imageVariantService.releaseVariants(event.getMediaVariants());
+    }
+}
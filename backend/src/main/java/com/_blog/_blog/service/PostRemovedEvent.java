@@ -0,0 +1,15 @@
+package com._blog._blog.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when a post is deleted; listeners run after the deleting transaction commits.
+ */
+@Getter
+@AllArgsConstructor
+public class PostRemovedEvent {
+    private Long postId;
+    private String mediaUrl;
+    private String mediaVariants;
+}
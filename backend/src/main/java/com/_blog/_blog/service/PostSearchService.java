@@ -0,0 +1,108 @@
+package com._blog._blog.service;
+
+import com._blog._blog.dto.SearchCursor;
+import com._blog._blog.entity.Post;
+import com._blog._blog.repository.PostRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text search over visible posts, backed by the generated posts.search_vector column and
+ * its GIN index (see database_migrations/add_post_search.sql).
+ *
+ * The query is parsed with websearch_to_tsquery, so users can type quoted phrases, "or" and
+ * -exclusions. Results are ordered by ts_rank, then newest first, and paged with a keyset
+ * cursor on (rank, createdAt, id). Only ids are ranked in SQL; the page is then loaded with
+ * its authors in one query, ready for FeedService.toDTOs.
+ */
+@Service
+public class PostSearchService {
+
+    private static final String SEARCH =
+            "SELECT r.id, r.created_at, r.rank FROM (" +
+            "  SELECT p.id, p.created_at, ts_rank(p.search_vector, q) AS rank " +
+            "  FROM posts p, websearch_to_tsquery('english', :q) q " +
+            "  WHERE p.search_vector @@ q AND p.is_hidden = false AND p.deleted_at IS NULL" +
+            ") r ";
+
+    private static final String AFTER_CURSOR =
+            "WHERE r.rank < CAST(:rank AS real) OR (r.rank = CAST(:rank AS real) " +
+            "AND (r.created_at < :createdAt OR (r.created_at = :createdAt AND r.id < :id))) ";
+
+    private static final String ORDER =
+            "ORDER BY r.rank DESC, r.created_at DESC, r.id DESC LIMIT :limit";
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Getter
+    @AllArgsConstructor
+    public static class SearchPage {
+        private List<Post> posts;
+        private String nextCursor; // null on the last page
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Hit {
+        private Long id;
+        private LocalDateTime createdAt;
+        private float rank;
+    }
+
+    public SearchPage search(String query, SearchCursor cursor, int pageSize) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("q", query)
+                .addValue("limit", pageSize + 1);
+        String sql = SEARCH + ORDER;
+        if (cursor != null) {
+            sql = SEARCH + AFTER_CURSOR + ORDER;
+            params.addValue("rank", cursor.getRank())
+                  .addValue("createdAt", cursor.getCreatedAt())
+                  .addValue("id", cursor.getId());
+        }
+
+        // Fetch one extra hit to know if there is a next page
+        List<Hit> hits = namedParameterJdbcTemplate.query(sql, params, (rs, rowNum) -> new Hit(
+                rs.getLong("id"), rs.getObject("created_at", LocalDateTime.class), rs.getFloat("rank")));
+
+        String nextCursor = null;
+        if (hits.size() > pageSize) {
+            hits = hits.subList(0, pageSize);
+            Hit last = hits.get(pageSize - 1);
+            nextCursor = new SearchCursor(last.getRank(), last.getCreatedAt(), last.getId()).encode();
+        }
+        if (hits.isEmpty()) {
+            return new SearchPage(new ArrayList<>(), null);
+        }
+
+        // Hydrate the page in one query and put it back in rank order
+        List<Long> ids = hits.stream().map(Hit::getId).collect(Collectors.toList());
+        Map<Long, Post> byId = new HashMap<>();
+        for (Post post : postRepository.findAllWithUserByIdIn(ids)) {
+            byId.put(post.getId(), post);
+        }
+        List<Post> posts = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Post post = byId.get(id);
+            if (post != null) { // Deleted between the two queries
+                posts.add(post);
+            }
+        }
+        return new SearchPage(posts, nextCursor);
+    }
+}
@@ -0,0 +1,98 @@
+package com._blog._blog.service;
+
+import com._blog._blog.entity.Post;
+import com._blog._blog.entity.User;
+import com._blog._blog.repository.PostRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+
+/**
+ * Writes posts in short transactions. Media is staged by the caller before a transaction is
+ * opened (MediaStore.stage), so the transaction only takes a reference on it, renames the file
+ * into the store and writes the post row; nothing streams a request body while holding a
+ * database connection.
+ */
+@Service
+public class PostService {
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private MediaStore mediaStore;
+
+    @Autowired
+    private UploadService uploadService;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private TimelineService timelineService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // media and uploadId are both optional; throws IllegalArgumentException for an unusable upload
+    @Transactional
+    public Post createPost(User user, String title, String description, StagedMedia media, String uploadId) throws IOException {
+        String mediaUrl = attachMedia(user, media, uploadId);
+
+        Post savedPost = postRepository.save(new Post(user, title, description, mediaUrl));
+
+        // Generate downscaled variants of an image in the background once the post has committed
+        if (mediaUrl != null) {
+            eventPublisher.publishEvent(new PostMediaChangedEvent(savedPost.getId(), mediaUrl));
+        }
+
+        // Push the post into subscribers' home timelines
+        timelineService.onPostPublished(savedPost);
+
+        // Notify subscribers in the background once the post has committed
+        eventPublisher.publishEvent(new PostPublishedEvent(
+            savedPost.getId(), user.getId(), user.getUsername(), title, savedPost.getCreatedAt()));
+        return savedPost;
+    }
+
+    @Transactional
+    public Post updatePost(Post post, User user, String title, String description,
+                           boolean removeMedia, StagedMedia media, String uploadId) throws IOException {
+        String newMediaUrl = attachMedia(user, media, uploadId);
+
+        post.setTitle(title);
+        post.setDescription(description);
+
+        // The old media and its variants go once the update commits and no other post uses them
+        if ((removeMedia || newMediaUrl != null) && post.getMediaUrl() != null) {
+            mediaStore.releaseAfterCommit(post.getMediaUrl());
+            // Not post.getMediaVariants(): a variant worker may have written the column since the post was loaded
+            imageVariantService.releaseVariantsAfterCommit(postRepository.clearMediaVariants(post.getId()));
+            post.setMediaUrl(null);
+            post.setMediaVariants(null);
+        }
+        if (newMediaUrl != null) {
+            post.setMediaUrl(newMediaUrl);
+            eventPublisher.publishEvent(new PostMediaChangedEvent(post.getId(), newMediaUrl));
+        }
+        return postRepository.save(post);
+    }
+
+    private String attachMedia(User user, StagedMedia media, String uploadId) throws IOException {
+        if (media != null) {
+            return mediaStore.adopt(media);
+        }
+        if (uploadId != null && !uploadId.isEmpty()) {
+            // Media sent beforehand through the resumable upload API
+            String mediaUrl = uploadService.consume(uploadId, user);
+            if (mediaUrl == null) {
+                throw new IllegalArgumentException("Upload not found or not completed");
+            }
+            return mediaUrl;
+        }
+        return null;
+    }
+}
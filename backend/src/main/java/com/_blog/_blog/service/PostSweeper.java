@@ -0,0 +1,142 @@
+package com._blog._blog.service;
+
+import com._blog._blog.repository.PostRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Physically removes tombstoned posts (see PostRemovalService.softDelete) in the background.
+ *
+ * Runs every app.posts.sweep.intervalMs, but only inside the low-traffic window
+ * app.posts.sweep.windowStart - windowEnd (local time, may wrap past midnight; leave both empty
+ * to sweep at any time). A run removes at most maxBatchesPerRun batches of batchSize posts,
+ * oldest tombstone first, one transaction per post, and sleeps pauseMs between posts.
+ */
+@Service
+public class PostSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostSweeper.class);
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private PostRemovalService postRemovalService;
+
+    @Value("${app.posts.sweep.windowStart:}")
+    private String windowStart;
+
+    @Value("${app.posts.sweep.windowEnd:}")
+    private String windowEnd;
+
+    @Value("${app.posts.sweep.batchSize:100}")
+    private int batchSize;
+
+    @Value("${app.posts.sweep.maxBatchesPerRun:10}")
+    private int maxBatchesPerRun;
+
+    @Value("${app.posts.sweep.pauseMs:50}")
+    private long pauseMs;
+
+    private final AtomicLong backlog = new AtomicLong();
+    private final Counter removed;
+    private final Counter failures;
+    private final Timer duration;
+
+    public PostSweeper(MeterRegistry meterRegistry) {
+        Gauge.builder("posts.sweep.backlog", backlog, AtomicLong::get)
+                .description("Tombstoned posts waiting to be removed")
+                .register(meterRegistry);
+        this.removed = Counter.builder("posts.sweep.removed")
+                .description("Tombstoned posts physically removed")
+                .register(meterRegistry);
+        this.failures = Counter.builder("posts.sweep.failures")
+                .description("Tombstoned posts that failed to be removed")
+                .register(meterRegistry);
+        this.duration = Timer.builder("posts.sweep.duration")
+                .description("Time spent in a sweep run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.posts.sweep.intervalMs:60000}")
+    public void sweep() {
+        backlog.set(postRepository.countByDeletedAtIsNotNull());
+        if (backlog.get() == 0 || !inWindow(LocalTime.now())) {
+            return;
+        }
+        duration.record(this::sweepBatches);
+    }
+
+    // Returns the number of posts removed
+    public int sweepBatches() {
+        int total = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            List<Object[]> tombstones = postRepository.findTombstones(LocalDateTime.now(), PageRequest.of(0, batchSize));
+            int removedInBatch = 0;
+            for (Object[] tombstone : tombstones) {
+                Long postId = (Long) tombstone[0];
+                try {
+                    postRemovalService.removePost(postId, (String) tombstone[1], (String) tombstone[2]);
+                    removed.increment();
+                    removedInBatch++;
+                } catch (RuntimeException e) {
+                    failures.increment();
+                    logger.warn("Failed to remove tombstoned post {}: {}", postId, e.getMessage());
+                }
+                if (!pause()) {
+                    return total + removedInBatch;
+                }
+            }
+            total += removedInBatch;
+            backlog.addAndGet(-removedInBatch);
+            // Stop on a short batch, or when every post of the batch failed so we do not spin on them
+            if (tombstones.size() < batchSize || removedInBatch == 0) {
+                break;
+            }
+        }
+        if (total > 0) {
+            logger.info("Removed {} tombstoned posts", total);
+        }
+        return total;
+    }
+
+    private boolean inWindow(LocalTime now) {
+        if (windowStart.isBlank() || windowEnd.isBlank()) {
+            return true;
+        }
+        LocalTime start = LocalTime.parse(windowStart);
+        LocalTime end = LocalTime.parse(windowEnd);
+        if (start.isBefore(end)) {
+            return !now.isBefore(start) && now.isBefore(end);
+        }
+        // The window wraps past midnight, e.g. 23:00 - 05:00
+        return !now.isBefore(start) || now.isBefore(end);
+    }
+
+    private boolean pause() {
+        if (pauseMs <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
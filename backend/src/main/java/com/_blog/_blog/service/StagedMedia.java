@@ -0,0 +1,17 @@
+package com._blog._blog.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+/**
+ * An upload written to MediaStore's temporary directory and hashed, not yet in the store.
+ */
+@Getter
+@AllArgsConstructor
+public class StagedMedia {
+    private Path file;
+    private String hash; // Hex SHA-256 of the content
+    private String filename; // Original name, for the extension
+}
@@ -0,0 +1,145 @@
+package com._blog._blog.service;
+
+import com._blog._blog.dto.PageCursor;
+import com._blog._blog.entity.Post;
+import com._blog._blog.repository.PostRepository;
+import com._blog._blog.repository.TimelineRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Maintains the per-user home timeline with a hybrid fan-out strategy.
+ * Posts from regular authors are pushed into a materialized inbox when they are created;
+ * posts from celebrity authors (see CelebrityRegistry) are pulled at read time and
+ * k-way merged with the inbox page.
+ */
+@Service
+public class TimelineService {
+
+    private static final Comparator<Post> NEWEST_FIRST =
+            Comparator.comparing(Post::getCreatedAt).thenComparing(Post::getId).reversed();
+
+    @Autowired
+    private TimelineRepository timelineRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private CelebrityRegistry celebrityRegistry;
+
+    @Autowired
+    private FollowGraph followGraph;
+
+    // How many recent posts of an author are copied into a timeline on subscribe
+    @Value("${app.timeline.backfillSize:100}")
+    private int backfillSize;
+
+    private final Counter pushReads;
+    private final Counter hybridReads;
+
+    public TimelineService(MeterRegistry meterRegistry) {
+        this.pushReads = Counter.builder("feed.timeline.reads").tag("path", "push")
+                .description("Timeline reads served from the materialized inbox only")
+                .register(meterRegistry);
+        this.hybridReads = Counter.builder("feed.timeline.reads").tag("path", "hybrid")
+                .description("Timeline reads that merged pulled celebrity posts into the inbox")
+                .register(meterRegistry);
+    }
+
+    // Read one page of the owner's timeline, newest first; returns up to pageSize + 1 posts
+    @Transactional(readOnly = true)
+    public List<Post> readPage(Long ownerId, PageCursor cursor, int pageSize) {
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        List<Post> inbox = cursor == null
+                ? timelineRepository.findTimeline(ownerId, pageRequest)
+                : timelineRepository.findTimelineBefore(ownerId, cursor.getCreatedAt(), cursor.getId(), pageRequest);
+
+        Set<Long> celebrityIds = celebrityRegistry.getCelebrityIds();
+        List<Long> followedCelebrities = new ArrayList<>();
+        for (Long authorId : celebrityIds) {
+            if (followGraph.isFollowing(ownerId, authorId)) {
+                followedCelebrities.add(authorId);
+            }
+        }
+        if (followedCelebrities.isEmpty()) {
+            pushReads.increment();
+            return inbox;
+        }
+
+        // Pull each followed celebrity's recent posts and merge them with the inbox page
+        List<List<Post>> sources = new ArrayList<>();
+        sources.add(inbox);
+        for (Long authorId : followedCelebrities) {
+            sources.add(cursor == null
+                    ? postRepository.findRecentByAuthor(authorId, pageRequest)
+                    : postRepository.findRecentByAuthorBefore(authorId, cursor.getCreatedAt(), cursor.getId(), pageRequest));
+        }
+        hybridReads.increment();
+        return merge(sources, pageSize + 1);
+    }
+
+    // k-way merge of newest-first lists, skipping posts present in more than one source
+    private List<Post> merge(List<List<Post>> sources, int limit) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>(
+                (a, b) -> NEWEST_FIRST.compare(sources.get(a[0]).get(a[1]), sources.get(b[0]).get(b[1])));
+        for (int i = 0; i < sources.size(); i++) {
+            if (!sources.get(i).isEmpty()) {
+                heads.add(new int[] {i, 0});
+            }
+        }
+
+        List<Post> merged = new ArrayList<>(limit);
+        Set<Long> seen = new HashSet<>();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            int[] head = heads.poll();
+            List<Post> source = sources.get(head[0]);
+            Post post = source.get(head[1]);
+            if (seen.add(post.getId())) {
+                merged.add(post);
+            }
+            if (head[1] + 1 < source.size()) {
+                heads.add(new int[] {head[0], head[1] + 1});
+            }
+        }
+        return merged;
+    }
+
+    @Transactional
+    public void onPostPublished(Post post) {
+        Long authorId = post.getUser().getId();
+        if (celebrityRegistry.shouldPush(authorId)) {
+            timelineRepository.fanOutPost(post.getId(), authorId, post.getCreatedAt());
+        }
+    }
+
+    @Transactional
+    public void onPostRemoved(Long postId) {
+        timelineRepository.deleteByPostId(postId);
+    }
+
+    @Transactional
+    public void onSubscribed(Long subscriberId, Long authorId) {
+        // Celebrity posts are pulled at read time, so there is nothing to backfill
+        if (!celebrityRegistry.getCelebrityIds().contains(authorId)) {
+            timelineRepository.backfillFromAuthor(subscriberId, authorId, backfillSize);
+        }
+    }
+
+    @Transactional
+    public void onUnsubscribed(Long subscriberId, Long authorId) {
+        timelineRepository.deleteByOwnerAndAuthor(subscriberId, authorId);
+    }
+}
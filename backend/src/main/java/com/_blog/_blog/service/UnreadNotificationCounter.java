@@ -0,0 +1,99 @@
+package com._blog._blog.service;
+
+import com._blog._blog.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory cache of users.unread_notification_count, so the notification bell costs no query.
+ *
+ * The column is the source of truth and is changed in the same statement or transaction as the
+ * notifications themselves. Once that transaction commits the cached value is dropped and
+ * reloaded on the next read. The reload runs inside computeIfAbsent, so a drop arriving while a
+ * reload is in progress waits for it and then removes what it loaded. A stale value can therefore
+ * not outlive the commit that made it stale.
+ */
+@Service
+public class UnreadNotificationCounter {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // Users whose count is cached; past this, counts are read from the database without caching
+    @Value("${app.notifications.unreadCache.maxUsers:100000}")
+    private int maxUsers;
+
+    private final Map<Long, Long> counts = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public UnreadNotificationCounter(MeterRegistry meterRegistry) {
+        Gauge.builder("notifications.unread.cached", counts, Map::size)
+                .description("Users whose unread notification count is cached")
+                .register(meterRegistry);
+        this.hits = Counter.builder("notifications.unread.lookups").tag("result", "hit")
+                .description("Unread notification counts served from memory")
+                .register(meterRegistry);
+        this.misses = Counter.builder("notifications.unread.lookups").tag("result", "miss")
+                .description("Unread notification counts read from the database")
+                .register(meterRegistry);
+    }
+
+    public long get(Long userId) {
+        Long cached = counts.get(userId);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        if (counts.size() >= maxUsers) {
+            return load(userId);
+        }
+        return counts.computeIfAbsent(userId, this::load);
+    }
+
+    // Drop the cached counts of these users once the current transaction commits
+    public void invalidateAfterCommit(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(userIds);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(userIds);
+            }
+        });
+    }
+
+    // Drop the cached counts of these users; call only after the change has committed
+    public void invalidate(Collection<Long> userIds) {
+        for (Long userId : userIds) {
+            counts.remove(userId);
+        }
+    }
+
+    // Drop every cached count, after bulk changes that do not report the users they touched
+    public void invalidateAll() {
+        counts.clear();
+    }
+
+    private long load(Long userId) {
+        Long count = userRepository.findUnreadNotificationCount(userId);
+        return count != null ? Math.max(count, 0) : 0;
+    }
+}
@@ -0,0 +1,302 @@
+package com._blog._blog.service;
+
+import com._blog._blog.entity.UploadSession;
+import com._blog._blog.entity.User;
+import com._blog._blog.repository.UploadSessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Resumable uploads. A session preallocates a file of the announced size under the store's
+ * temporary directory; chunks are written straight into it at their offset with positional
+ * FileChannel writes, so they can arrive in any order, be retried, and never sit in the heap.
+ * Completing verifies the SHA-256 of the whole file, and a post then adopts the file into
+ * MediaStore without copying it. Sessions idle for app.uploads.ttlHours are removed.
+ *
+ * Chunk writes hold the shared side of a per-session lock and only start while the session is
+ * OPEN; completing takes the exclusive side to wait for writes in flight and moves the session to
+ * VERIFYING before hashing, so no write can change the file once its checksum is being taken.
+ * A post therefore adopts a COMPLETE file on the strength of that checksum, without reading it
+ * again inside its transaction.
+ *
+ * Nothing on the chunk path uses JPA before the body has been read: with open-in-view the first
+ * JPA query of a request keeps its connection until the response is written, which for a chunk
+ * would be for as long as the client takes to send it. The session is read with JdbcTemplate,
+ * which returns its connection right after the query.
+ */
+@Service
+public class UploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadService.class);
+
+    public static final String OPEN = "OPEN";
+    public static final String VERIFYING = "VERIFYING";
+    public static final String COMPLETE = "COMPLETE";
+
+    private static final int LOCK_STRIPES = 64;
+
+    private static final String FILE_PREFIX = "session-";
+
+    private static final String SELECT_FOR_WRITE =
+            "SELECT user_id, total_size, chunk_size, status FROM upload_sessions WHERE id = ?";
+    private static final String SELECT_STATUS = "SELECT status FROM upload_sessions WHERE id = ?";
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private MediaStore mediaStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.uploads.chunkSize:5242880}")
+    private int chunkSize;
+
+    @Value("${app.uploads.maxSize:52428800}")
+    private long maxSize;
+
+    @Value("${app.uploads.ttlHours:24}")
+    private long ttlHours;
+
+    @Value("${app.uploads.maxOpenPerUser:5}")
+    private long maxOpenPerUser;
+
+    private final ReentrantReadWriteLock[] sessionLocks = new ReentrantReadWriteLock[LOCK_STRIPES];
+    private final TransactionTemplate newTransaction;
+
+    public UploadService(PlatformTransactionManager transactionManager) {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            sessionLocks[i] = new ReentrantReadWriteLock();
+        }
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    // Throws IllegalStateException when the user already has app.uploads.maxOpenPerUser open uploads
+    public UploadSession create(User user, String filename, long size) throws IOException {
+        if (uploadSessionRepository.countByUserIdAndStatus(user.getId(), OPEN) >= maxOpenPerUser) {
+            throw new IllegalStateException("Too many open uploads");
+        }
+        UploadSession session = new UploadSession(UUID.randomUUID().toString(), user, filename, size, chunkSize);
+        // Preallocate, so every chunk is a plain positional write
+        try (RandomAccessFile file = new RandomAccessFile(partFile(session.getId()).toFile(), "rw")) {
+            file.setLength(size);
+        }
+        return uploadSessionRepository.save(session);
+    }
+
+    // The user's session, or null if there is none with this id
+    public UploadSession get(String uploadId, User user) {
+        return uploadSessionRepository.findById(uploadId)
+                .filter(session -> session.getUserId().equals(user.getId()))
+                .orElse(null);
+    }
+
+    // The user's session as far as a chunk write needs it (no chunk bits), or null if there is
+    // none with this id; read without JPA, see the class comment
+    public UploadSession getForWrite(String uploadId, User user) {
+        List<UploadSession> sessions = jdbcTemplate.query(SELECT_FOR_WRITE, (rs, rowNum) -> {
+            UploadSession session = new UploadSession();
+            session.setId(uploadId);
+            session.setUserId(rs.getLong("user_id"));
+            session.setTotalSize(rs.getLong("total_size"));
+            session.setChunkSize(rs.getInt("chunk_size"));
+            session.setStatus(rs.getString("status"));
+            return session;
+        }, uploadId);
+        return sessions.isEmpty() || !sessions.get(0).getUserId().equals(user.getId()) ? null : sessions.get(0);
+    }
+
+    // Expected length of the chunk starting at offset
+    public long chunkLength(UploadSession session, long offset) {
+        return Math.min(session.getChunkSize(), session.getTotalSize() - offset);
+    }
+
+    // Write one chunk at its offset; returns false if the body was shorter than the chunk.
+    // Throws IllegalStateException if the session is no longer open.
+    public boolean writeChunk(UploadSession session, long offset, InputStream body) throws IOException {
+        ReentrantReadWriteLock lock = sessionLock(session.getId());
+        lock.readLock().lock();
+        try {
+            // Checked again under the lock: the caller's copy may predate a completion
+            List<String> status = jdbcTemplate.queryForList(SELECT_STATUS, String.class, session.getId());
+            if (status.isEmpty() || !OPEN.equals(status.get(0))) {
+                throw new IllegalStateException("Upload already completed");
+            }
+            long length = chunkLength(session, offset);
+            long written = 0;
+            try (FileChannel channel = FileChannel.open(partFile(session.getId()), StandardOpenOption.WRITE);
+                 ReadableByteChannel in = Channels.newChannel(body)) {
+                while (written < length) {
+                    long transferred = channel.transferFrom(in, offset + written, length - written);
+                    if (transferred <= 0) {
+                        break; // End of the request body
+                    }
+                    written += transferred;
+                }
+            }
+            if (written < length) {
+                return false;
+            }
+            int chunk = (int) (offset / session.getChunkSize());
+            return uploadSessionRepository.markChunkReceived(session.getId(), chunk, LocalDateTime.now()) > 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Verify the checksum of the assembled file; returns false on a mismatch.
+    // Throws IllegalStateException if the session is not open (e.g. completed concurrently).
+    public boolean complete(UploadSession session, String sha256) throws IOException {
+        // Wait for the writes in flight, then leave OPEN so no new write starts
+        ReentrantReadWriteLock lock = sessionLock(session.getId());
+        lock.writeLock().lock();
+        try {
+            if (uploadSessionRepository.transition(session.getId(), OPEN, VERIFYING, LocalDateTime.now()) == 0) {
+                throw new IllegalStateException("Upload is not open");
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        String actual;
+        try {
+            actual = hash(partFile(session.getId()));
+        } catch (IOException | RuntimeException e) {
+            uploadSessionRepository.transition(session.getId(), VERIFYING, OPEN, LocalDateTime.now());
+            throw e;
+        }
+        if (!actual.equalsIgnoreCase(sha256)) {
+            uploadSessionRepository.transition(session.getId(), VERIFYING, OPEN, LocalDateTime.now());
+            return false;
+        }
+        uploadSessionRepository.markComplete(session.getId(), actual, LocalDateTime.now());
+        session.setSha256(actual);
+        session.setStatus(COMPLETE);
+        return true;
+    }
+
+    // Move a completed upload into the media store for a post; returns its media URL, or null if
+    // the user has no completed upload with this id. Runs in the caller's transaction, so it does
+    // no more file I/O than the rename into the store.
+    @Transactional
+    public String consume(String uploadId, User user) throws IOException {
+        UploadSession session = get(uploadId, user);
+        if (session == null || uploadSessionRepository.deleteCompleted(session.getId()) == 0) {
+            return null;
+        }
+        Path file = partFile(session.getId());
+        // The file is gone after the move, so a rolled back post ends the session instead of
+        // leaving a COMPLETE session without a file; the client uploads again
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    newTransaction.executeWithoutResult(tx -> uploadSessionRepository.deleteById(session.getId()));
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        logger.warn("Failed to remove upload {}: {}", session.getId(), e.getMessage());
+                    }
+                }
+            }
+        });
+        if (!Files.exists(file)) {
+            return null;
+        }
+        return mediaStore.adopt(new StagedMedia(file, session.getSha256(), session.getFilename()));
+    }
+
+    @Transactional
+    public void cancel(UploadSession session) throws IOException {
+        uploadSessionRepository.delete(session);
+        Files.deleteIfExists(partFile(session.getId()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.uploads.gcIntervalMs:3600000}")
+    public void removeStaleSessions() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(ttlHours);
+        List<UploadSession> stale = uploadSessionRepository.findByUpdatedAtBefore(cutoff);
+        for (UploadSession session : stale) {
+            try {
+                cancel(session);
+            } catch (IOException e) {
+                logger.warn("Failed to remove upload {}: {}", session.getId(), e.getMessage());
+            }
+        }
+        if (!stale.isEmpty()) {
+            logger.info("Removed {} stale uploads", stale.size());
+        }
+
+        // Partial files left without a session, e.g. by a crash right after preallocating
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(mediaStore.tempDir(), FILE_PREFIX + "*.part")) {
+            for (Path file : files) {
+                String id = file.getFileName().toString();
+                id = id.substring(FILE_PREFIX.length(), id.length() - ".part".length());
+                boolean old = Files.getLastModifiedTime(file).toInstant()
+                        .isBefore(cutoff.atZone(ZoneId.systemDefault()).toInstant());
+                if (old && !uploadSessionRepository.existsById(id)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to clean up partial uploads: {}", e.getMessage());
+        }
+    }
+
+    private ReentrantReadWriteLock sessionLock(String uploadId) {
+        return sessionLocks[Math.floorMod(uploadId.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest = MediaStore.sha256();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private Path partFile(String uploadId) throws IOException {
+        return mediaStore.tempDir().resolve(FILE_PREFIX + uploadId + ".part");
+    }
+}
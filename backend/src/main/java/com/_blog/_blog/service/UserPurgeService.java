@@ -0,0 +1,302 @@
+package com._blog._blog.service;
+
+import com._blog._blog.entity.PurgeJob;
+import com._blog._blog.entity.User;
+import com._blog._blog.repository.PurgeJobRepository;
+import com._blog._blog.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Deletes a user and all of their data in the background.
+ *
+ * The user is first marked as deleting (which disables the account), then every table is purged
+ * in chunks of app.users.purge.chunkSize rows, one short transaction per chunk, and finally the
+ * user row itself is removed. Every step only deletes rows that still exist, so a job interrupted
+ * by a restart is simply run again from the first step when the application starts.
+ */
+@Service
+public class UserPurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserPurgeService.class);
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    private static final List<String> UNFINISHED = List.of(PENDING, RUNNING);
+
+    // Each step deletes at most :limit rows and returns how many it deleted
+    private static final String[][] STEPS = {
+        // Likes and comments by the user, taken off the counters of the posts they were on
+        {"likes",
+            "WITH del AS (DELETE FROM likes WHERE id IN " +
+            "(SELECT id FROM likes WHERE user_id = :userId LIMIT :limit) RETURNING post_id), " +
+            "counts AS (UPDATE posts p SET like_count = p.like_count - d.cnt " +
+            "FROM (SELECT post_id, COUNT(*) AS cnt FROM del GROUP BY post_id) d WHERE p.id = d.post_id) " +
+            "SELECT COUNT(*) FROM del"},
+        {"comments",
+            "WITH del AS (DELETE FROM comments WHERE id IN " +
+            "(SELECT id FROM comments WHERE user_id = :userId LIMIT :limit) RETURNING post_id), " +
+            "counts AS (UPDATE posts p SET comment_count = p.comment_count - d.cnt " +
+            "FROM (SELECT post_id, COUNT(*) AS cnt FROM del GROUP BY post_id) d WHERE p.id = d.post_id) " +
+            "SELECT COUNT(*) FROM del"},
+        // Notifications for and by the user, the unread ones taken off their recipients' counters
+        {"notifications",
+            "WITH del AS (DELETE FROM notifications WHERE id IN " +
+            "(SELECT id FROM notifications WHERE user_id = :userId OR actor_id = :userId LIMIT :limit) RETURNING user_id, is_read), " +
+            "counts AS (UPDATE users u SET unread_notification_count = u.unread_notification_count - d.cnt " +
+            "FROM (SELECT user_id, COUNT(*) AS cnt FROM del WHERE NOT is_read GROUP BY user_id) d WHERE u.id = d.user_id) " +
+            "SELECT COUNT(*) FROM del"},
+        {"reports",
+            "WITH del AS (DELETE FROM reports WHERE id IN " +
+            "(SELECT id FROM reports WHERE reporter_id = :userId OR reported_user_id = :userId LIMIT :limit) RETURNING 1) " +
+            "SELECT COUNT(*) FROM del"},
+        // Subscriptions both ways, taken off the follower/following counters of the other users
+        // (one UPDATE, since a user can be on both sides and a row may only be updated once)
+        {"subscriptions",
+            "WITH del AS (DELETE FROM subscriptions WHERE id IN " +
+            "(SELECT id FROM subscriptions WHERE subscriber_id = :userId OR subscribed_to_id = :userId LIMIT :limit) " +
+            "RETURNING subscriber_id, subscribed_to_id), " +
+            "counts AS (UPDATE users u SET follower_count = u.follower_count - d.followers, " +
+            "following_count = u.following_count - d.following " +
+            "FROM (SELECT CASE WHEN subscriber_id = :userId THEN subscribed_to_id ELSE subscriber_id END AS user_id, " +
+            "COUNT(*) FILTER (WHERE subscriber_id = :userId) AS followers, " +
+            "COUNT(*) FILTER (WHERE subscribed_to_id = :userId) AS following " +
+            "FROM del GROUP BY 1) d WHERE u.id = d.user_id) " +
+            "SELECT COUNT(*) FROM del"},
+        {"timeline",
+            "WITH del AS (DELETE FROM timeline_entries WHERE id IN " +
+            "(SELECT id FROM timeline_entries WHERE owner_id = :userId OR author_id = :userId LIMIT :limit) RETURNING 1) " +
+            "SELECT COUNT(*) FROM del"},
+        // Everything attached to the user's own posts
+        {"post likes",
+            "WITH del AS (DELETE FROM likes WHERE id IN " +
+            "(SELECT l.id FROM likes l JOIN posts p ON p.id = l.post_id WHERE p.user_id = :userId LIMIT :limit) RETURNING 1) " +
+            "SELECT COUNT(*) FROM del"},
+        {"post comments",
+            "WITH del AS (DELETE FROM comments WHERE id IN " +
+            "(SELECT c.id FROM comments c JOIN posts p ON p.id = c.post_id WHERE p.user_id = :userId LIMIT :limit) RETURNING 1) " +
+            "SELECT COUNT(*) FROM del"},
+        {"post notifications",
+            "WITH del AS (DELETE FROM notifications WHERE id IN " +
+            "(SELECT n.id FROM notifications n JOIN posts p ON p.id = n.post_id WHERE p.user_id = :userId LIMIT :limit) RETURNING user_id, is_read), " +
+            "counts AS (UPDATE users u SET unread_notification_count = u.unread_notification_count - d.cnt " +
+            "FROM (SELECT user_id, COUNT(*) AS cnt FROM del WHERE NOT is_read GROUP BY user_id) d WHERE u.id = d.user_id) " +
+            "SELECT COUNT(*) FROM del"},
+        {"post reports",
+            "WITH del AS (DELETE FROM reports WHERE id IN " +
+            "(SELECT r.id FROM reports r JOIN posts p ON p.id = r.post_id WHERE p.user_id = :userId LIMIT :limit) RETURNING 1) " +
+            "SELECT COUNT(*) FROM del"},
+    };
+
+    private static final String DELETE_POSTS =
+            "DELETE FROM posts WHERE id IN (SELECT id FROM posts WHERE user_id = :userId LIMIT :limit) " +
+            "RETURNING id, media_url, media_variants";
+
+    private static final String UPDATE_PROGRESS =
+            "UPDATE purge_jobs SET phase = :phase, rows_deleted = rows_deleted + :rows, updated_at = :now WHERE id = :jobId";
+
+    // A new post or like written while the job ran makes the final user delete fail; purge again
+    private static final int MAX_PASSES = 3;
+
+    @Autowired
+    private PurgeJobRepository purgeJobRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private PostRemovalService postRemovalService;
+
+    @Autowired
+    private LikeIndex likeIndex;
+
+    @Autowired
+    private FollowGraph followGraph;
+
+    @Autowired
+    private UnreadNotificationCounter unreadNotificationCounter;
+
+    @Value("${app.users.purge.chunkSize:1000}")
+    private int chunkSize;
+
+    private final TransactionTemplate transactionTemplate;
+    private ExecutorService worker;
+
+    public UserPurgeService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() {
+        // One job at a time keeps the purge from competing with regular traffic
+        worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        worker.shutdownNow();
+    }
+
+    // Mark the user as deleting and queue the purge; a repeated request returns the unfinished job
+    public PurgeJob startPurge(Long userId) {
+        PurgeJob job = transactionTemplate.execute(status -> {
+            PurgeJob existing = purgeJobRepository.findFirstByUserIdAndStatusIn(userId, UNFINISHED).orElse(null);
+            if (existing != null) {
+                return existing;
+            }
+            User user = userRepository.findById(userId)
+                    .orElseThrow(() -> new RuntimeException("User not found"));
+            user.setDeleting(true);
+            userRepository.save(user);
+            return purgeJobRepository.save(new PurgeJob(user));
+        });
+        submit(job.getId());
+        return job;
+    }
+
+    public PurgeJob getJob(Long jobId) {
+        return purgeJobRepository.findById(jobId).orElse(null);
+    }
+
+    // Pick up jobs interrupted by a shutdown
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJobs() {
+        for (PurgeJob job : purgeJobRepository.findByStatusInOrderByIdAsc(UNFINISHED)) {
+            logger.info("Resuming purge job {} for user {}", job.getId(), job.getUsername());
+            submit(job.getId());
+        }
+    }
+
+    private void submit(Long jobId) {
+        worker.submit(() -> run(jobId));
+    }
+
+    private void run(Long jobId) {
+        PurgeJob job = purgeJobRepository.findById(jobId).orElse(null);
+        if (job == null || !UNFINISHED.contains(job.getStatus())) {
+            return; // Already finished, e.g. submitted twice
+        }
+        setStatus(job, RUNNING, null);
+        Long userId = job.getUserId();
+
+        try {
+            for (int pass = 1; ; pass++) {
+                for (String[] step : STEPS) {
+                    purgeStep(jobId, userId, step[0], step[1]);
+                    if (step[0].equals("likes")) {
+                        likeIndex.removeUser(userId);
+                    } else if (step[0].equals("subscriptions")) {
+                        followGraph.removeUser(userId);
+                    } else if (step[0].endsWith("notifications")) {
+                        // The steps only report how many rows they deleted, not whose counters changed
+                        unreadNotificationCounter.invalidateAll();
+                    }
+                }
+                purgePosts(jobId, userId);
+
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        MapSqlParameterSource params = new MapSqlParameterSource("userId", userId);
+                        namedParameterJdbcTemplate.update("DELETE FROM users WHERE id = :userId", params);
+                        updateProgress(jobId, "user", 1);
+                    });
+                    break;
+                } catch (DataIntegrityViolationException e) {
+                    if (pass >= MAX_PASSES) {
+                        throw e;
+                    }
+                    logger.info("Purge job {}: new rows appeared during the purge, running pass {}", jobId, pass + 1);
+                }
+            }
+            setStatus(job, DONE, null);
+            logger.info("Purge job {} deleted user {}", jobId, job.getUsername());
+        } catch (RuntimeException e) {
+            logger.error("Purge job {} for user {} failed", jobId, job.getUsername(), e);
+            setStatus(job, FAILED, e.getMessage());
+        }
+    }
+
+    // Run one step in chunks until it has nothing left to delete
+    private void purgeStep(Long jobId, Long userId, String phase, String sql) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("limit", chunkSize);
+        long deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> {
+                Long rows = namedParameterJdbcTemplate.queryForObject(sql, params, Long.class);
+                updateProgress(jobId, phase, rows);
+                return rows;
+            });
+        } while (deleted >= chunkSize);
+    }
+
+    // Posts are deleted in chunks too; their media files and cached likers go once a chunk commits
+    private void purgePosts(Long jobId, Long userId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("limit", chunkSize);
+        List<Map<String, Object>> deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> {
+                List<Map<String, Object>> rows = namedParameterJdbcTemplate.queryForList(DELETE_POSTS, params);
+                updateProgress(jobId, "posts", rows.size());
+                return rows;
+            });
+            for (Map<String, Object> row : deleted) {
+                Long postId = ((Number) row.get("id")).longValue();
+                postRemovalService.onPostRemoved(new PostRemovedEvent(postId,
+                        (String) row.get("media_url"), (String) row.get("media_variants")));
+            }
+        } while (deleted.size() >= chunkSize);
+    }
+
+    private void updateProgress(Long jobId, String phase, long rows) {
+        namedParameterJdbcTemplate.update(UPDATE_PROGRESS, new MapSqlParameterSource()
+                .addValue("jobId", jobId)
+                .addValue("phase", phase)
+                .addValue("rows", rows)
+                .addValue("now", LocalDateTime.now()));
+    }
+
+    private void setStatus(PurgeJob job, String status, String error) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            PurgeJob current = purgeJobRepository.findById(job.getId()).orElseThrow();
+            current.setStatus(status);
+            current.setError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+            current.setUpdatedAt(LocalDateTime.now());
+            if (DONE.equals(status) || FAILED.equals(status)) {
+                current.setFinishedAt(LocalDateTime.now());
+            }
+            purgeJobRepository.save(current);
+        });
+    }
+}
@@ -0,0 +1,49 @@
+package com._blog._blog.service;
+
+import com._blog._blog.entity.User;
+import com._blog._blog.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Username search for the user-search page.
+ *
+ * Usernames that start with the query come first, in alphabetical order, read from a btree
+ * range scan; the rest of the page is filled with usernames that are merely similar (pg_trgm),
+ * closest first, read as a nearest-neighbour scan of a GiST index. Both stop after :limit rows,
+ * so the cost does not grow with the number of users.
+ */
+@Service
+public class UserSearchService {
+
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 50;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    public List<User> search(String query, User viewer, int limit) {
+        String normalized = query.trim().toLowerCase(Locale.ROOT);
+        String prefix = escapeLike(normalized) + "%";
+
+        List<User> users = new ArrayList<>(userRepository.searchByUsernamePrefix(prefix, viewer.getId(), limit));
+        if (users.size() < limit) {
+            users.addAll(userRepository.searchByUsernameSimilarity(normalized, prefix, viewer.getId(), limit - users.size()));
+        }
+        return users;
+    }
+
+    // Clamp a client-supplied limit into [1, MAX_LIMIT]
+    public static int limit(Integer limit) {
+        return Math.min(Math.max(limit != null ? limit : DEFAULT_LIMIT, 1), MAX_LIMIT);
+    }
+
+    // Match the query literally: LIKE wildcards in a username search are not wildcards
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -127,7 +127,7 @@ export class AdminDashboardComponent implements OnInit {
     this.adminService.deleteUser(user.id).subscribe({
       next: () => {
         this.users = this.users.filter(u => u.id !== user.id);
-        alert(`User "${user.username}" has been deleted`);
+        alert(`User "${user.username}" is being deleted`);
       },
       error: (error) => {
         console.error('Failed to delete user:', error);
@@ -27,6 +27,8 @@ export class DashboardComponent implements OnInit {
   user: any = null;
   posts: Post[] = [];
   loading: boolean = true;
+  nextCursor: string | null = null;
+  loadingMore: boolean = false;
 
   constructor(
     private authService: AuthService,
@@ -46,13 +48,31 @@ export class DashboardComponent implements OnInit {
   loadPosts(): void {
     this.loading = true;
     this.apiService.getSubscribedUsersposts().subscribe({
-      next: (posts) => {
-        this.posts = posts;
+      next: (page) => {
+        this.posts = page.posts;
+        this.nextCursor = page.nextCursor;
         this.loading = false;
       },
     });
   }
 
+  loadMore(): void {
+    if (!this.nextCursor || this.loadingMore) {
+      return;
+    }
+    this.loadingMore = true;
+    this.apiService.getSubscribedUsersposts(this.nextCursor).subscribe({
+      next: (page) => {
+        this.posts = [...this.posts, ...page.posts];
+        this.nextCursor = page.nextCursor;
+        this.loadingMore = false;
+      },
+      error: () => {
+        this.loadingMore = false;
+      }
+    });
+  }
+
   logout(): void {
     this.authService.logout();
   }
@@ -75,6 +95,10 @@ export class DashboardComponent implements OnInit {
     this.postManagementService.toggleComments(post);
   }
 
+  loadMoreComments(post: Post): void {
+    this.postManagementService.loadMoreComments(post);
+  }
+
   addComment(post: Post): void {
     this.postManagementService.addComment(post);
   }
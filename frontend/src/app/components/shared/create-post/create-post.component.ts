@@ -151,16 +151,30 @@ export class CreatePostComponent implements OnChanges {
     formData.append('title', this.title.trim());
     formData.append('description', this.content.trim());
     
-    // Add media file if present
-    if (this.mediaFile) {
-      formData.append('media', this.mediaFile);
-    }
-    
     // If editing and removing media
     if (this.editingPost && this.removeExistingMedia) {
       formData.append('removeMedia', 'true');
     }
 
+    // Send media first through the resumable upload API, then attach it by uploadId
+    if (this.mediaFile) {
+      this.apiService.uploadMedia(this.mediaFile).subscribe({
+        next: (uploadId) => {
+          formData.append('uploadId', uploadId);
+          this.submitPost(formData);
+        },
+        error: (error) => {
+          console.error('Failed to upload media:', error);
+          this.loading = false;
+          this.error = error.error?.message || 'Failed to upload media. Please try again.';
+        }
+      });
+    } else {
+      this.submitPost(formData);
+    }
+  }
+
+  private submitPost(formData: FormData): void {
     // Determine if we're creating or updating
     if (this.editingPost) {
       // Update existing post
@@ -1,7 +1,7 @@
 import { Component, OnInit, OnDestroy } from '@angular/core';
 import { CommonModule } from '@angular/common';
 import { Router, NavigationEnd } from '@angular/router';
-import { Subscription, filter } from 'rxjs';
+import { Subscription, filter, retry, tap, timer } from 'rxjs';
 import { AuthService } from '../../../services/auth.service';
 import { NewPostService } from '../../../services/new-post.service';
 import { CreatePostComponent } from '../create-post/create-post.component';
@@ -36,6 +36,12 @@ export class HeaderComponent implements OnInit, OnDestroy {
   notifications: Notification[] = [];
   isErrorPage: boolean = false;
   private routerSubscription?: Subscription;
+  private streamSubscription?: Subscription;
+  private static readonly STREAM_RETRY_MAX_MS = 60000;
+  private static readonly SEEN_NOTIFICATIONS_MAX = 500;
+  // Ids of notifications already counted, so events replayed after a reconnect are ignored even
+  // while the list itself has not been loaded; insertion ordered, the oldest are evicted first
+  private seenNotificationIds = new Set<number>();
 
   constructor(
     private authService: AuthService,
@@ -62,13 +68,74 @@ export class HeaderComponent implements OnInit, OnDestroy {
     if (this.routerSubscription) {
       this.routerSubscription.unsubscribe();
     }
+    this.closeNotificationStream();
+  }
+
+  // Fetch the unread count once, then keep it current from the stream instead of refetching
+  // per navigation; the list itself is only loaded when the menu is opened
+  openNotificationStream(): void {
+    if (this.streamSubscription) {
+      return;
+    }
+    this.loadUnreadCount();
+    // If the browser gives up on the stream, reopen it with backoff; the count is reloaded first
+    // since events may have been missed while it was closed
+    this.streamSubscription = this.notificationService.stream().pipe(
+      retry({
+        delay: (_, attempt) => timer(Math.min(1000 * 2 ** (attempt - 1), HeaderComponent.STREAM_RETRY_MAX_MS))
+          .pipe(tap(() => this.loadUnreadCount())),
+        resetOnSuccess: true
+      })
+    ).subscribe({
+      next: (event) => {
+        if (event.type === 'resync') {
+          this.loadUnreadCount();
+          return;
+        }
+        const notification = event.notification!;
+        if (!this.markSeen(notification.id)) {
+          return; // Replayed after a reconnect
+        }
+        this.notifications = [notification, ...this.notifications];
+        if (!notification.read) {
+          this.unreadCount++;
+        }
+      }
+    });
+  }
+
+  // Record the id as seen; false if it already was
+  private markSeen(id: number): boolean {
+    if (this.seenNotificationIds.has(id)) {
+      return false;
+    }
+    this.seenNotificationIds.add(id);
+    if (this.seenNotificationIds.size > HeaderComponent.SEEN_NOTIFICATIONS_MAX) {
+      this.seenNotificationIds.delete(this.seenNotificationIds.values().next().value!);
+    }
+    return true;
+  }
+
+  closeNotificationStream(): void {
+    if (this.streamSubscription) {
+      this.streamSubscription.unsubscribe();
+      this.streamSubscription = undefined;
+    }
   }
 
   loadNotifications(): void {
     this.notificationService.getUnreadNotifications().subscribe({
       next: (notifications) => {
         this.notifications = notifications;
-        this.unreadCount = notifications.filter(n => !n.read).length;
+        notifications.forEach(n => this.markSeen(n.id));
+      }
+    });
+  }
+
+  loadUnreadCount(): void {
+    this.notificationService.getUnreadCount().subscribe({
+      next: (response) => {
+        this.unreadCount = response.count;
       }
     });
   }
@@ -76,8 +143,10 @@ export class HeaderComponent implements OnInit, OnDestroy {
   markAsRead(notification: Notification): void {
     this.notificationService.markAsRead(notification.id).subscribe({
       next: () => {
+        if (!notification.read) {
+          this.unreadCount = Math.max(this.unreadCount - 1, 0);
+        }
         notification.read = true;
-        this.unreadCount = this.notifications.filter(n => !n.read).length;
         // Navigate to post if available
         if (notification.postId) {
           this.router.navigate(['/dashboard']); // or navigate to specific post
@@ -99,10 +168,13 @@ export class HeaderComponent implements OnInit, OnDestroy {
     this.isAuthenticated = this.authService.isLoggedIn;
     if (this.isAuthenticated) {
       this.user = this.authService.getUserInfo();
-      this.loadNotifications();
+      this.openNotificationStream();
     } else {
       this.user = null;
       this.notifications = [];
+      this.seenNotificationIds.clear();
+      this.unreadCount = 0;
+      this.closeNotificationStream();
     }
   }
 
@@ -173,6 +245,7 @@ export class HeaderComponent implements OnInit, OnDestroy {
   }
 
   logout(): void {
+    this.closeNotificationStream();
     this.authService.logout();
   }
 }
@@ -34,6 +34,7 @@ export class PostCardComponent {
 
   @Output() likeToggled = new EventEmitter<Post>();
   @Output() commentsToggled = new EventEmitter<Post>();
+  @Output() moreCommentsRequested = new EventEmitter<Post>();
   @Output() commentAdded = new EventEmitter<Post>();
   @Output() commentDeleted = new EventEmitter<{ post: Post, comment: Comment }>();
   @Output() postEdited = new EventEmitter<Post>();
@@ -75,6 +76,10 @@ export class PostCardComponent {
     this.commentsToggled.emit(this.post);
   }
 
+  onLoadMoreComments(): void {
+    this.moreCommentsRequested.emit(this.post);
+  }
+
   onAddComment(): void {
     this.commentAdded.emit(this.post);
   }
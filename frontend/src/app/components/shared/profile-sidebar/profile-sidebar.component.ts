@@ -55,9 +55,9 @@ export class ProfileSidebarComponent implements OnInit, OnChanges {
     if (!this.username || this.statsLoaded) return;
     
     // Load subscriber count
-    this.apiService.getSubscribers(this.username).subscribe({
+    this.apiService.getSubscribers(this.username, null, 1).subscribe({
       next: (subscribers) => {
-        this.subscriberCount = subscribers.length;
+        this.subscriberCount = subscribers.total;
       },
       error: (error) => {
         console.error('Failed to load subscribers:', error);
@@ -65,9 +65,9 @@ export class ProfileSidebarComponent implements OnInit, OnChanges {
     });
 
     // Load subscription count
-    this.apiService.getSubscriptions(this.username).subscribe({
+    this.apiService.getSubscriptions(this.username, null, 1).subscribe({
       next: (subscriptions) => {
-        this.subscriptionCount = subscriptions.length;
+        this.subscriptionCount = subscriptions.total;
       },
       error: (error) => {
         console.error('Failed to load subscriptions:', error);
@@ -126,6 +126,10 @@ export class UserProfileComponent implements OnInit, OnDestroy {
     this.postManagementService.toggleComments(post);
   }
 
+  loadMoreComments(post: Post): void {
+    this.postManagementService.loadMoreComments(post);
+  }
+
   addComment(post: Post): void {
     this.postManagementService.addComment(post);
   }
@@ -196,9 +200,9 @@ export class UserProfileComponent implements OnInit, OnDestroy {
 
   loadSubscriptionStats(): void {
     // Load subscriber count
-    this.apiService.getSubscribers(this.username).subscribe({
+    this.apiService.getSubscribers(this.username, null, 1).subscribe({
       next: (subscribers) => {
-        this.subscriberCount = subscribers.length;
+        this.subscriberCount = subscribers.total;
       },
       error: (error) => {
         console.error('Failed to load subscribers:', error);
@@ -206,9 +210,9 @@ export class UserProfileComponent implements OnInit, OnDestroy {
     });
 
     // Load subscription count (people this user follows)
-    this.apiService.getSubscriptions(this.username).subscribe({
+    this.apiService.getSubscriptions(this.username, null, 1).subscribe({
       next: (subscriptions) => {
-        this.subscriptionCount = subscriptions.length;
+        this.subscriptionCount = subscriptions.total;
       },
       error: (error) => {
         console.error('Failed to load subscriptions:', error);
@@ -1,4 +1,4 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
 import { CommonModule } from '@angular/common';
 import { FormsModule } from '@angular/forms';
 import { MatFormFieldModule } from '@angular/material/form-field';
@@ -9,6 +9,7 @@ import { MatCardModule } from '@angular/material/card';
 import { MatProgressSpinnerModule } from '@angular/material/progress-spinner';
 import { ApiService, User } from '../../services/api.service';
 import { AuthService } from '../../services/auth.service';
+import { Subject, Subscription, catchError, debounceTime, distinctUntilChanged, switchMap, of } from 'rxjs';
 
 @Component({
   selector: 'app-user-search',
@@ -26,12 +27,16 @@ import { AuthService } from '../../services/auth.service';
   templateUrl: './user-search.component.html',
   styleUrls: ['./user-search.component.css']
 })
-export class UserSearchComponent implements OnInit {
+export class UserSearchComponent implements OnInit, OnDestroy {
   searchQuery: string = '';
   users: User[] = [];
   filteredUsers: User[] = [];
   loading: boolean = false;
+  nextCursor: string | null = null;
+  loadingMore: boolean = false;
   currentUserId: number | null = null;
+  private searchTerms = new Subject<string>();
+  private searchSubscription?: Subscription;
 
   constructor(
     private apiService: ApiService,
@@ -41,6 +46,27 @@ export class UserSearchComponent implements OnInit {
   ngOnInit() {
     this.loadAllUsers();
     this.getCurrentUser();
+
+    // Search on the server once typing pauses; an empty query shows the full list again
+    this.searchSubscription = this.searchTerms.pipe(
+      debounceTime(250),
+      distinctUntilChanged(),
+      // A failed search shows no results but must not end the stream, or later keystrokes are ignored
+      switchMap(query => query
+        ? this.apiService.searchUsers(query).pipe(
+            catchError(error => {
+              console.error('Error searching users:', error);
+              return of([] as User[]);
+            })
+          )
+        : of(this.users))
+    ).subscribe({
+      next: (users: User[]) => this.filteredUsers = users
+    });
+  }
+
+  ngOnDestroy() {
+    this.searchSubscription?.unsubscribe();
   }
 
   getCurrentUser() {
@@ -53,9 +79,10 @@ export class UserSearchComponent implements OnInit {
 
   loadAllUsers() {
     this.loading = true;
-    this.apiService.getAllUsers().subscribe({
-      next: (users: User[]) => {
-        this.users = users.filter((user: User) => user.id !== this.currentUserId);
+    this.apiService.getUserDirectory().subscribe({
+      next: (page) => {
+        this.users = page.users;
+        this.nextCursor = page.nextCursor;
         this.filteredUsers = this.users;
         this.loading = false;
       },
@@ -66,17 +93,28 @@ export class UserSearchComponent implements OnInit {
     });
   }
 
-  onSearch() {
-    if (!this.searchQuery.trim()) {
-      this.filteredUsers = this.users;
+  loadMore() {
+    if (!this.nextCursor || this.loadingMore) {
       return;
     }
+    this.loadingMore = true;
+    this.apiService.getUserDirectory(this.nextCursor).subscribe({
+      next: (page) => {
+        this.users = [...this.users, ...page.users];
+        this.nextCursor = page.nextCursor;
+        if (!this.searchQuery.trim()) {
+          this.filteredUsers = this.users;
+        }
+        this.loadingMore = false;
+      },
+      error: () => {
+        this.loadingMore = false;
+      }
+    });
+  }
 
-    const query = this.searchQuery.toLowerCase().trim();
-    this.filteredUsers = this.users.filter(user =>
-      user.username.toLowerCase().includes(query) ||
-      user.email.toLowerCase().includes(query)
-    );
+  onSearch() {
+    this.searchTerms.next(this.searchQuery.trim());
   }
 
   toggleSubscribe(user: User) {
@@ -11,6 +11,7 @@ export interface AdminUser {
   postCount: number;
   followerCount: number;
   isBanned?: boolean;
+  isDeleting?: boolean;
 }
 
 export interface AdminPost {
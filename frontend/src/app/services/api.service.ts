@@ -1,6 +1,18 @@
 import { Injectable } from '@angular/core';
 import { HttpClient } from '@angular/common/http';
-import { Observable } from 'rxjs';
+import { Observable, from } from 'rxjs';
+import { concatMap, map, retry, toArray } from 'rxjs/operators';
+
+export interface UploadSession {
+  uploadId: string;
+  filename: string;
+  size: number;
+  chunkSize: number;
+  chunkCount: number;
+  receivedChunks: number;
+  missingOffsets: number[];
+  status: 'OPEN' | 'COMPLETE';
+}
 
 export interface RegisterRequest {
   username: string;
@@ -27,6 +39,7 @@ export interface Post {
   title: string;
   description: string;  
   mediaUrl: string;
+  previewUrl?: string;  // Downscaled image variant for cards, falls back to mediaUrl
   createdAt: string;
   username: string;
   userId?: number;  // Made optional since backend might not always return it
@@ -36,10 +49,16 @@ export interface Post {
   // UI-specific properties for comments
   showComments?: boolean;
   comments?: Comment[];
+  commentsCursor?: string | null;
   newComment?: string;
   loadingComments?: boolean;
 }
 
+export interface PostPage {
+  posts: Post[];
+  nextCursor: string | null;
+}
+
 export interface Comment {
   id: number;
   content: string;
@@ -47,6 +66,11 @@ export interface Comment {
   createdAt: string;
 }
 
+export interface CommentPage {
+  comments: Comment[];
+  nextCursor: string | null;
+}
+
 export interface User {
   id: number;
   username: string;
@@ -56,6 +80,17 @@ export interface User {
   isSubscribed?: boolean;
 }
 
+export interface UserPage {
+  users: User[];
+  nextCursor: string | null;
+}
+
+export interface SubscriberPage {
+  users: { username: string; email: string }[];
+  nextCursor: string | null;
+  total: number;
+}
+
 @Injectable({
   providedIn: 'root'
 })
@@ -72,13 +107,32 @@ export class ApiService {
     return this.http.post<AuthResponse>(`${this.baseUrl}/auth/login`, request);
   }
 
-  getSubscribedUsersposts(): Observable<Post[]> {
-    return this.http.get<Post[]>(`${this.baseUrl}/user/me`);
+  // Get one page of the home timeline (pass the previous page's nextCursor to continue)
+  getSubscribedUsersposts(cursor?: string): Observable<PostPage> {
+    const params: { [param: string]: string } = cursor ? { cursor } : {};
+    return this.http.get<PostPage>(`${this.baseUrl}/user/me`, { params });
+  }
+
+  // Search posts by relevance; pass the previous page's nextCursor to continue
+  searchPosts(q: string, cursor?: string): Observable<PostPage> {
+    const params: { [param: string]: string } = cursor ? { q, cursor } : { q };
+    return this.http.get<PostPage>(`${this.baseUrl}/posts/search`, { params });
+  }
+
+  // Get one page of the user directory; pass the previous page's nextCursor to continue
+  getUserDirectory(cursor?: string): Observable<UserPage> {
+    const params: { [param: string]: string } = cursor ? { cursor } : {};
+    return this.http.get<UserPage>(`${this.baseUrl}/user/directory`, { params });
   }
 
-  // Get all users
-  getAllUsers(): Observable<User[]> {
-    return this.http.get<User[]>(`${this.baseUrl}/user/all`);
+  // Search users by username (prefix matches first, then similar names)
+  searchUsers(q: string, limit: number = 20): Observable<User[]> {
+    return this.http.get<User[]>(`${this.baseUrl}/user/search`, { params: { q, limit } });
+  }
+
+  // Who to follow, ranked by how many followed users follow them
+  getFollowSuggestions(): Observable<(User & { mutualCount: number })[]> {
+    return this.http.get<(User & { mutualCount: number })[]>(`${this.baseUrl}/subscriptions/suggestions`);
   }
 
   // Create a new post
@@ -86,6 +140,24 @@ export class ApiService {
     return this.http.post<Post>(`${this.baseUrl}/posts`, formData);
   }
 
+  // Upload a media file in chunks through the resumable upload API; emits the uploadId
+  // to pass to createPost/editPost. A failed chunk is retried on its own.
+  uploadMedia(file: File): Observable<string> {
+    return this.http.post<UploadSession>(`${this.baseUrl}/uploads`, { filename: file.name, size: file.size }).pipe(
+      concatMap(session => from(session.missingOffsets).pipe(
+        concatMap(offset => this.http.put<UploadSession>(
+          `${this.baseUrl}/uploads/${session.uploadId}`,
+          file.slice(offset, offset + session.chunkSize),
+          { params: { offset }, headers: { 'Content-Type': 'application/octet-stream' } }
+        ).pipe(retry({ count: 3, delay: 1000 }))),
+        toArray(),
+        concatMap(() => from(sha256Hex(file))),
+        concatMap(sha256 => this.http.post<UploadSession>(`${this.baseUrl}/uploads/${session.uploadId}/complete`, { sha256 })),
+        map(() => session.uploadId)
+      ))
+    );
+  }
+
   // Delete a post
   deletePost(postId: number): Observable<any> {
     return this.http.delete(`${this.baseUrl}/posts/${postId}`);
@@ -101,23 +173,27 @@ export class ApiService {
     return this.http.get<Post[]>(`${this.baseUrl}/posts/user/${username}`);
   }
 
-  // Like a post
+  // Like a post (idempotent, so a double click cannot fail)
   likePost(postId: number): Observable<{ likeCount: number; isLiked: boolean }> {
-    return this.http.post<{ likeCount: number; isLiked: boolean }>(
-      `${this.baseUrl}/posts/${postId}/like`, {}
-    );
+    return this.setLike(postId, true);
   }
 
   // Unlike a post
   unlikePost(postId: number): Observable<{ likeCount: number; isLiked: boolean }> {
-    return this.http.delete<{ likeCount: number; isLiked: boolean }>(
-      `${this.baseUrl}/posts/${postId}/like`
+    return this.setLike(postId, false);
+  }
+
+  // Set the like state of a post
+  setLike(postId: number, state: boolean): Observable<{ likeCount: number; isLiked: boolean }> {
+    return this.http.put<{ likeCount: number; isLiked: boolean }>(
+      `${this.baseUrl}/posts/${postId}/like`, {}, { params: { state } }
     );
   }
 
-  // Get comments for a post
-  getComments(postId: number): Observable<Comment[]> {
-    return this.http.get<Comment[]>(`${this.baseUrl}/posts/${postId}/comments`);
+  // Get one page of comments for a post, newest first
+  getComments(postId: number, cursor?: string): Observable<CommentPage> {
+    const params: { [param: string]: string } = cursor ? { cursor } : {};
+    return this.http.get<CommentPage>(`${this.baseUrl}/posts/${postId}/comments`, { params });
   }
 
   // Add a comment to a post
@@ -158,22 +234,28 @@ export class ApiService {
     );
   }
 
-  // Get user's subscribers
-  getSubscribers(username: string): Observable<{ username: string; email: string }[]> {
-    return this.http.get<{ username: string; email: string }[]>(
-      `${this.baseUrl}/subscriptions/${username}/subscribers`
-    );
+  // Get one page of a user's subscribers; total counts all of them
+  getSubscribers(username: string, cursor?: string | null, limit?: number): Observable<SubscriberPage> {
+    const params: { [param: string]: string } = cursor ? { cursor } : {};
+    if (limit) params['limit'] = String(limit);
+    return this.http.get<SubscriberPage>(`${this.baseUrl}/subscriptions/${username}/subscribers`, { params });
   }
 
-  // Get users that a user is subscribed to
-  getSubscriptions(username: string): Observable<{ username: string; email: string }[]> {
-    return this.http.get<{ username: string; email: string }[]>(
-      `${this.baseUrl}/subscriptions/${username}/subscriptions`
-    );
+  // Get one page of the users a user is subscribed to; total counts all of them
+  getSubscriptions(username: string, cursor?: string | null, limit?: number): Observable<SubscriberPage> {
+    const params: { [param: string]: string } = cursor ? { cursor } : {};
+    if (limit) params['limit'] = String(limit);
+    return this.http.get<SubscriberPage>(`${this.baseUrl}/subscriptions/${username}/subscriptions`, { params });
   }
 
   // Report a post or user
   reportPost(reportData: { postId: number; reportType: 'post' | 'user'; reason: string }): Observable<any> {
     return this.http.post(`${this.baseUrl}/reports`, reportData);
   }
-}
\ No newline at end of file
+}
+
+// Hex SHA-256 of a file, checked by the server when an upload completes
+async function sha256Hex(file: Blob): Promise<string> {
+  const digest = await crypto.subtle.digest('SHA-256', await file.arrayBuffer());
+  return Array.from(new Uint8Array(digest)).map(b => b.toString(16).padStart(2, '0')).join('');
+}
@@ -1,6 +1,7 @@
 import { Injectable } from '@angular/core';
 import { HttpClient } from '@angular/common/http';
 import { Observable } from 'rxjs';
+import { AuthService } from './auth.service';
 
 export interface Notification {
   id: number;
@@ -13,13 +14,61 @@ export interface Notification {
   postTitle?: string;
 }
 
+export interface NotificationPage {
+  notifications: Notification[];
+  nextCursor: string | null;
+}
+
+export interface NotificationStreamEvent {
+  type: 'notification' | 'resync';
+  notification?: Notification;
+}
+
 @Injectable({
   providedIn: 'root'
 })
 export class NotificationService {
   private baseUrl = 'http://localhost:8080/api/notifications';
 
-  constructor(private http: HttpClient) { }
+  constructor(private http: HttpClient, private authService: AuthService) { }
+
+  // Live notifications over Server-Sent Events; EventSource reconnects by itself and resumes
+  // with Last-Event-ID. "resync" means events were missed and the list should be reloaded.
+  // Errors once the EventSource has given up; each subscription opens it with the current token.
+  stream(): Observable<NotificationStreamEvent> {
+    return new Observable<NotificationStreamEvent>(subscriber => {
+      const token = this.authService.token;
+      if (!token) {
+        subscriber.complete();
+        return;
+      }
+      // EventSource cannot send an Authorization header
+      const source = new EventSource(`${this.baseUrl}/stream?access_token=${encodeURIComponent(token)}`);
+      source.addEventListener('notification', (event: MessageEvent) => {
+        subscriber.next({ type: 'notification', notification: JSON.parse(event.data) });
+      });
+      source.addEventListener('resync', () => subscriber.next({ type: 'resync' }));
+      // Network errors are retried by EventSource itself; CLOSED means it gave up, e.g. because
+      // the server rejected the request (an expired token), so let the subscriber reopen the stream
+      source.onerror = () => {
+        if (source.readyState === EventSource.CLOSED) {
+          subscriber.error(new Error('Notification stream closed'));
+        }
+      };
+      return () => source.close();
+    });
+  }
+
+  // One page of the notification history, newest first; pass nextCursor for the next page
+  getNotifications(cursor?: string): Observable<NotificationPage> {
+    const params: { [param: string]: string } = cursor ? { cursor } : {};
+    return this.http.get<NotificationPage>(this.baseUrl, { params });
+  }
+
+  // Unread count for the bell, without downloading the notifications
+  getUnreadCount(): Observable<{ count: number }> {
+    return this.http.get<{ count: number }>(`${this.baseUrl}/unread-count`);
+  }
 
   // Get unread notifications
   getUnreadNotifications(): Observable<Notification[]> {
@@ -45,8 +45,9 @@ export class PostManagementService {
     if (post.showComments && !post.comments) {
       post.loadingComments = true;
       this.apiService.getComments(post.id).subscribe({
-        next: (comments) => {
-          post.comments = comments;
+        next: (page) => {
+          post.comments = page.comments;
+          post.commentsCursor = page.nextCursor;
           post.loadingComments = false;
         },
         error: (error) => {
@@ -57,6 +58,28 @@ export class PostManagementService {
     }
   }
 
+  /**
+   * Load the next page of comments
+   */
+  loadMoreComments(post: Post): void {
+    if (!post.commentsCursor || post.loadingComments) {
+      return;
+    }
+
+    post.loadingComments = true;
+    this.apiService.getComments(post.id, post.commentsCursor).subscribe({
+      next: (page) => {
+        post.comments = [...(post.comments || []), ...page.comments];
+        post.commentsCursor = page.nextCursor;
+        post.loadingComments = false;
+      },
+      error: (error) => {
+        console.error('Failed to load comments:', error);
+        post.loadingComments = false;
+      }
+    });
+  }
+
   /**
    * Add a comment to a post
    */